@@ -0,0 +1,62 @@
+/* ==========================================================
+File:        CliCommandBenchmark.java
+Description: Measures building and logging wakatime-cli commands.
+Maintainer:  WakaTime <support@wakatime.com>
+License:     BSD, see LICENSE for more details.
+Website:     https://wakatime.com/
+===========================================================*/
+
+package org.wakatime.netbeans.plugin;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CliCommandBenchmark {
+    private Heartbeat heartbeat;
+    private Heartbeat write;
+    private String[] command;
+
+    @Setup
+    public void setUp() throws Exception {
+        File home = Fixtures.useTempHome();
+        Fixtures.writeConfig(home, Fixtures.realisticConfig());
+        Fixtures.TestProject project = new Fixtures.TestProject("/home/user/projects/app", "app");
+        heartbeat = new Heartbeat("/home/user/projects/app/src/Main.java", project, false, System.currentTimeMillis());
+        heartbeat.position = new CursorPosition(120, 17, 480);
+        write = new Heartbeat("/home/user/projects/app/src/Main.java", project, true, System.currentTimeMillis());
+        write.lineAdditions = 3;
+        write.lineDeletions = 1;
+        command = WakaTime.buildCliCommand(heartbeat, true);
+    }
+
+    @Benchmark
+    public String[] buildCliCommand() {
+        return WakaTime.buildCliCommand(heartbeat, false);
+    }
+
+    @Benchmark
+    public String[] buildCliCommandWrite() {
+        return WakaTime.buildCliCommand(write, true);
+    }
+
+    @Benchmark
+    public String[] obfuscateKey() {
+        return WakaTime.obfuscateKey(command);
+    }
+}
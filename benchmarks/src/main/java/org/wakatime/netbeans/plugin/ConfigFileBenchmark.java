@@ -0,0 +1,86 @@
+/* ==========================================================
+File:        ConfigFileBenchmark.java
+Description: Measures reading and writing ~/.wakatime.cfg.
+Maintainer:  WakaTime <support@wakatime.com>
+License:     BSD, see LICENSE for more details.
+Website:     https://wakatime.com/
+===========================================================*/
+
+package org.wakatime.netbeans.plugin;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * get() hits the parsed config unless the file changed, so it's measured
+ * both ways. set() always rewrites the file under its lock. parse() runs
+ * IniFile's parser on the config text alone, so its time can be compared
+ * across config sizes without file I/O. entries is the number of keys
+ * added to the realistic config's [projectmap] and [git] sections.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConfigFileBenchmark {
+    @Param({ "0", "100", "1000", "10000" })
+    public int entries;
+
+    private String text;
+    private File file;
+    private long modified;
+    private int counter;
+
+    @Setup
+    public void setUp() throws Exception {
+        File home = Fixtures.useTempHome();
+        text = Fixtures.largeConfig(entries);
+        file = Fixtures.writeConfig(home, text);
+        modified = file.lastModified();
+    }
+
+    @Benchmark
+    public IniFile parse() throws IOException {
+        IniFile ini = new IniFile();
+        ini.parse(new BufferedReader(new StringReader(text)));
+        return ini;
+    }
+
+    @Benchmark
+    public String get() {
+        return ConfigFile.get("settings", "api_key", false);
+    }
+
+    @Benchmark
+    public String getMissingKey() {
+        return ConfigFile.get("settings", "no_such_key", false);
+    }
+
+    @Benchmark
+    public String getAfterChange() {
+        // a new modification time makes the next get parse the file again
+        file.setLastModified(modified + (++counter % 2 == 0 ? 1000 : 2000));
+        return ConfigFile.get("settings", "api_key", false);
+    }
+
+    @Benchmark
+    public void set() {
+        ConfigFile.set("settings", "debug", false, (++counter % 2 == 0) ? "true" : "false");
+    }
+}
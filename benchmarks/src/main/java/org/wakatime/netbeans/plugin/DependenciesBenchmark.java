@@ -0,0 +1,52 @@
+/* ==========================================================
+File:        DependenciesBenchmark.java
+Description: Measures resolving wakatime-cli paths.
+Maintainer:  WakaTime <support@wakatime.com>
+License:     BSD, see LICENSE for more details.
+Website:     https://wakatime.com/
+===========================================================*/
+
+package org.wakatime.netbeans.plugin;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DependenciesBenchmark {
+    private String resources;
+
+    @Setup
+    public void setUp() throws Exception {
+        Fixtures.useTempHome();
+        resources = Dependencies.getResourcesLocation();
+    }
+
+    @Benchmark
+    public String combinePaths() {
+        return Dependencies.combinePaths(resources, "wakatime-cli-linux-amd64");
+    }
+
+    @Benchmark
+    public String combinePathsWithNulls() {
+        return Dependencies.combinePaths(null, resources, null, "wakatime-cli");
+    }
+
+    @Benchmark
+    public String getCLILocation() {
+        return Dependencies.getCLILocation();
+    }
+}
@@ -0,0 +1,200 @@
+/* ==========================================================
+File:        Fixtures.java
+Description: Files, projects and a private home folder for headless runs.
+Maintainer:  WakaTime <support@wakatime.com>
+License:     BSD, see LICENSE for more details.
+Website:     https://wakatime.com/
+===========================================================*/
+
+package org.wakatime.netbeans.plugin;
+
+import java.beans.PropertyChangeListener;
+import java.beans.PropertyChangeSupport;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import javax.swing.text.Document;
+import javax.swing.text.PlainDocument;
+import org.netbeans.api.project.Project;
+import org.netbeans.api.project.ProjectInformation;
+import org.openide.filesystems.FileObject;
+import org.openide.util.Lookup;
+
+/**
+ * Test doubles shared by the benchmarks and tests. The plugin caches its
+ * config and resources folders on first use, so useTempHome() must run
+ * before anything else in the JVM touches them.
+ */
+public class Fixtures {
+    private static File home = null;
+
+    /**
+     * Points user.home at a fresh folder, so runs never read or write the
+     * real ~/.wakatime.cfg. Later calls return the same folder.
+     */
+    public static synchronized File useTempHome() throws IOException {
+        if (home == null) {
+            home = Files.createTempDirectory("wakatime-home").toFile();
+            System.setProperty("user.home", home.getAbsolutePath());
+        }
+        return home;
+    }
+
+    /**
+     * Replaces the config file, making sure its modification time changes
+     * so ConfigFile parses it again.
+     */
+    public static File writeConfig(File home, String contents) throws IOException {
+        File file = new File(home, ".wakatime.cfg");
+        long before = file.lastModified();
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+        if (file.lastModified() <= before)
+            file.setLastModified(before + 1000);
+        return file;
+    }
+
+    /**
+     * A config like most users have: an api key, a few settings and some
+     * exclude patterns.
+     */
+    public static String realisticConfig() {
+        return "[settings]\n"
+            + "api_key = 0a1b2c3d-4e5f-6789-abcd-ef0123456789\n"
+            + "debug = false\n"
+            + "proxy =\n"
+            + "hide_file_names = false\n"
+            + "exclude =\n"
+            + "    ^COMMIT_EDITMSG$\n"
+            + "    ^TAG_EDITMSG$\n"
+            + "    ^/var/\n"
+            + "include =\n"
+            + "    .*\n"
+            + "\n"
+            + "[projectmap]\n"
+            + "projects/foo = new project name\n"
+            + "^/home/user/projects/bar(\\d+)/ = project{0}\n"
+            + "\n"
+            + "[git]\n"
+            + "disable_submodules = false\n";
+    }
+
+    /**
+     * The realistic config with entries more keys, half of them in
+     * [projectmap] and half in [git], like a config shared by a team with
+     * long project maps.
+     */
+    public static String largeConfig(int entries) {
+        Random random = new Random(42);
+        StringBuilder projectmap = new StringBuilder();
+        StringBuilder git = new StringBuilder();
+        for (int k = 0; k < entries; k++) {
+            if (k % 2 == 0) {
+                projectmap.append("projects/team").append(k / 100).append("/module").append(k)
+                    .append(" = module-").append(Long.toHexString(random.nextLong())).append('\n');
+            } else {
+                git.append("submodules/team").append(k / 100).append("/module").append(k)
+                    .append(" = ").append(random.nextBoolean()).append('\n');
+            }
+        }
+        return realisticConfig().replace("\n[git]\n", projectmap + "\n[git]\n") + git;
+    }
+
+    public static Document newDocument(FileObject file) {
+        Document document = new PlainDocument();
+        document.putProperty(Document.StreamDescriptionProperty, file);
+        return document;
+    }
+
+    public static class TestFileObject extends FileObject {
+        private final String path;
+
+        public TestFileObject(String path) {
+            this.path = path;
+        }
+
+        @Override
+        public String getPath() {
+            return path;
+        }
+
+        @Override
+        public String getNameExt() {
+            return path.substring(path.lastIndexOf('/') + 1);
+        }
+
+        @Override
+        public FileObject getParent() {
+            int slash = path.lastIndexOf('/');
+            return slash <= 0 ? null : new TestFileObject(path.substring(0, slash));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof TestFileObject && ((TestFileObject) o).path.equals(path);
+        }
+
+        @Override
+        public int hashCode() {
+            return path.hashCode();
+        }
+    }
+
+    public static class TestProject implements Project, ProjectInformation {
+        private final FileObject folder;
+        private final PropertyChangeSupport support = new PropertyChangeSupport(this);
+        private String name;
+
+        public TestProject(String path, String name) {
+            this.folder = new TestFileObject(path);
+            this.name = name;
+        }
+
+        @Override
+        public FileObject getProjectDirectory() {
+            return folder;
+        }
+
+        @Override
+        public Lookup getLookup() {
+            return new Lookup() {
+                @Override
+                public <T> T lookup(Class<T> clazz) {
+                    return clazz.isInstance(TestProject.this) ? clazz.cast(TestProject.this) : null;
+                }
+            };
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return name;
+        }
+
+        public void rename(String newName) {
+            String old = name;
+            name = newName;
+            support.firePropertyChange(PROP_DISPLAY_NAME, old, newName);
+        }
+
+        @Override
+        public Project getProject() {
+            return this;
+        }
+
+        @Override
+        public void addPropertyChangeListener(PropertyChangeListener listener) {
+            support.addPropertyChangeListener(listener);
+        }
+
+        @Override
+        public void removePropertyChangeListener(PropertyChangeListener listener) {
+            support.removePropertyChangeListener(listener);
+        }
+    }
+}
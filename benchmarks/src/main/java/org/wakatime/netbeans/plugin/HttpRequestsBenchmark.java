@@ -0,0 +1,103 @@
+/* ==========================================================
+File:        HttpRequestsBenchmark.java
+Description: Measures request throughput with and without keep-alive.
+Maintainer:  WakaTime <support@wakatime.com>
+License:     BSD, see LICENSE for more details.
+Website:     https://wakatime.com/
+===========================================================*/
+
+package org.wakatime.netbeans.plugin;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sends GET requests through HttpRequests.execute to a local server.
+ * pooled reads each body to the end so the JDK returns the connection to
+ * its keep-alive cache, the way the plugin does. freshConnection asks
+ * for the connection to be closed after every response, so each request
+ * pays for a new TCP connection.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HttpRequestsBenchmark {
+    private static final byte[] BODY = new byte[2048];
+
+    private HttpServer server;
+    private String url;
+
+    private final HttpRequests.Handler<Integer> pooled = new HttpRequests.Handler<Integer>() {
+        @Override
+        public Integer handle(HttpURLConnection conn) throws IOException {
+            int statusCode = conn.getResponseCode();
+            HttpRequests.drain(conn.getInputStream());
+            return statusCode;
+        }
+    };
+
+    private final HttpRequests.Handler<Integer> fresh = new HttpRequests.Handler<Integer>() {
+        @Override
+        public Integer handle(HttpURLConnection conn) throws IOException {
+            conn.setRequestProperty("Connection", "close");
+            int statusCode = conn.getResponseCode();
+            HttpRequests.drain(conn.getInputStream());
+            return statusCode;
+        }
+    };
+
+    @Setup
+    public void setUp() throws Exception {
+        Fixtures.useTempHome();
+        Arrays.fill(BODY, (byte) 'x');
+        // without it the server's separate header and body writes wait on delayed ACKs
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                HttpRequests.drain(exchange.getRequestBody());
+                exchange.sendResponseHeaders(200, BODY.length);
+                exchange.getResponseBody().write(BODY);
+                exchange.close();
+            }
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/api/v1/users/current";
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Benchmark
+    public int pooled() throws IOException {
+        return HttpRequests.execute(url, pooled);
+    }
+
+    @Benchmark
+    public int freshConnection() throws IOException {
+        return HttpRequests.execute(url, fresh);
+    }
+}
@@ -0,0 +1,132 @@
+/* ==========================================================
+File:        MultiCaretEditBenchmark.java
+Description: Measures the listener's event thread cost for multi-caret edits.
+Maintainer:  WakaTime <support@wakatime.com>
+License:     BSD, see LICENSE for more details.
+Website:     https://wakatime.com/
+===========================================================*/
+
+package org.wakatime.netbeans.plugin;
+
+import java.util.concurrent.TimeUnit;
+import javax.swing.event.DocumentEvent;
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+import org.netbeans.api.project.ui.OpenProjects;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A multi-caret paste fires one document event per caret, each replacing
+ * a line with two, all on the event thread. Undoing it fires the reverse
+ * events. Each operation fires both at CustomDocumentListener, so the
+ * document keeps its shape between operations. The file's first
+ * heartbeat is already pending, so every event is throttled, like all
+ * but at most one event of a real mass edit.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MultiCaretEditBenchmark {
+    private static final int LINES = 20000;
+
+    @Param({"10", "100", "1000"})
+    public int carets;
+
+    private CustomDocumentListener listener;
+    private DocumentEvent[] pastes;
+    private DocumentEvent[] undos;
+
+    @Setup
+    public void setUp() throws Exception {
+        Fixtures.useTempHome();
+        OpenProjects.getDefault().setOpenProjects(new Fixtures.TestProject("/home/user/projects/app", "app"));
+        DocumentCache.install();
+        Document document = Fixtures.newDocument(new Fixtures.TestFileObject("/home/user/projects/app/src/Main.java"));
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < LINES; i++) {
+            text.append("        int value").append(i).append(" = compute(").append(i).append(");\n");
+        }
+        document.insertString(0, text.toString(), null);
+        listener = new CustomDocumentListener(document);
+        listener.typed(System.currentTimeMillis() / 1000);
+
+        Element root = document.getDefaultRootElement();
+        pastes = new DocumentEvent[carets];
+        undos = new DocumentEvent[carets];
+        for (int i = 0; i < carets; i++) {
+            int index = (int) ((long) i * (LINES - 2) / carets);
+            Element line = root.getElement(index);
+            Element[] one = new Element[] { line };
+            Element[] two = new Element[] { line, root.getElement(index + 1) };
+            int offset = line.getStartOffset() + 8;
+            pastes[i] = new Event(document, offset, 1, DocumentEvent.EventType.INSERT, new AbstractDocument.ElementEdit(root, index, one, two));
+            undos[i] = new Event(document, offset, 1, DocumentEvent.EventType.REMOVE, new AbstractDocument.ElementEdit(root, index, two, one));
+        }
+    }
+
+    @Benchmark
+    public CustomDocumentListener pasteAndUndo() {
+        for (DocumentEvent paste : pastes) {
+            listener.insertUpdate(paste);
+        }
+        for (DocumentEvent undo : undos) {
+            listener.removeUpdate(undo);
+        }
+        return listener;
+    }
+
+    private static class Event implements DocumentEvent {
+        private final Document document;
+        private final int offset;
+        private final int length;
+        private final EventType type;
+        private final ElementChange change;
+
+        Event(Document document, int offset, int length, EventType type, ElementChange change) {
+            this.document = document;
+            this.offset = offset;
+            this.length = length;
+            this.type = type;
+            this.change = change;
+        }
+
+        @Override
+        public int getOffset() {
+            return offset;
+        }
+
+        @Override
+        public int getLength() {
+            return length;
+        }
+
+        @Override
+        public Document getDocument() {
+            return document;
+        }
+
+        @Override
+        public EventType getType() {
+            return type;
+        }
+
+        @Override
+        public ElementChange getChange(Element elem) {
+            return elem == change.getElement() ? change : null;
+        }
+    }
+}
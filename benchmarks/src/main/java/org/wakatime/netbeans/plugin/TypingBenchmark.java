@@ -0,0 +1,74 @@
+/* ==========================================================
+File:        TypingBenchmark.java
+Description: Measures the per-keystroke decision of CustomDocumentListener.
+Maintainer:  WakaTime <support@wakatime.com>
+License:     BSD, see LICENSE for more details.
+Website:     https://wakatime.com/
+===========================================================*/
+
+package org.wakatime.netbeans.plugin;
+
+import java.util.concurrent.TimeUnit;
+import javax.swing.text.Document;
+import org.netbeans.api.project.ui.OpenProjects;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * handleTyping looks up the document's file and project and asks
+ * HeartbeatStates whether the keystroke earns a heartbeat, before posting
+ * anything to the event thread. This calls the same typed() decision.
+ * Almost every keystroke is throttled, so that's the path measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TypingBenchmark {
+    private static final int FILES = 100;
+
+    private CustomDocumentListener[] listeners;
+    private long now;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        Fixtures.useTempHome();
+        OpenProjects.getDefault().setOpenProjects(
+            new Fixtures.TestProject("/home/user/projects/app", "app"),
+            new Fixtures.TestProject("/home/user/projects/app/module", "module"));
+        DocumentCache.install();
+        listeners = new CustomDocumentListener[FILES];
+        for (int i = 0; i < FILES; i++) {
+            Document document = Fixtures.newDocument(new Fixtures.TestFileObject("/home/user/projects/app/module/src/File" + i + ".java"));
+            listeners[i] = new CustomDocumentListener(document);
+        }
+        // prime the cache and send each file's first heartbeat, so the benchmark sees throttled keystrokes
+        now = System.currentTimeMillis() / 1000;
+        for (CustomDocumentListener listener : listeners) {
+            DocumentCache.Entry entry = listener.typed(now);
+            HeartbeatStates.dequeued(entry.path);
+        }
+    }
+
+    @Benchmark
+    public DocumentCache.Entry sameFile() {
+        return listeners[0].typed(now);
+    }
+
+    @Benchmark
+    public DocumentCache.Entry switchingFiles() {
+        next = (next + 1) % FILES;
+        return listeners[next].typed(now);
+    }
+}
@@ -0,0 +1,11 @@
+package org.netbeans.api.autoupdate;
+
+public class UpdateElement {
+    public String getCodeName() {
+        return null;
+    }
+
+    public String getSpecificationVersion() {
+        return null;
+    }
+}
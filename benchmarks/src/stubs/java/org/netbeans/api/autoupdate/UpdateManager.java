@@ -0,0 +1,19 @@
+package org.netbeans.api.autoupdate;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Headless stand-in for UpdateManager. Nothing is installed.
+ */
+public class UpdateManager {
+    private static final UpdateManager DEFAULT = new UpdateManager();
+
+    public static UpdateManager getDefault() {
+        return DEFAULT;
+    }
+
+    public List<UpdateUnit> getUpdateUnits() {
+        return Collections.emptyList();
+    }
+}
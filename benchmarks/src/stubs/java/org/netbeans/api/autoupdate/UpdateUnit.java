@@ -0,0 +1,7 @@
+package org.netbeans.api.autoupdate;
+
+public class UpdateUnit {
+    public UpdateElement getInstalled() {
+        return null;
+    }
+}
@@ -0,0 +1,35 @@
+package org.netbeans.api.editor;
+
+import java.beans.PropertyChangeListener;
+import java.util.Collections;
+import java.util.List;
+import javax.swing.text.JTextComponent;
+
+/**
+ * Headless stand-in for EditorRegistry. There are no editors.
+ */
+public class EditorRegistry {
+    public static final String FOCUS_GAINED_PROPERTY = "focusGained";
+    public static final String FOCUS_LOST_PROPERTY = "focusLost";
+    public static final String FOCUSED_DOCUMENT_PROPERTY = "focusedDocument";
+    public static final String COMPONENT_REMOVED_PROPERTY = "componentRemoved";
+    public static final String LAST_FOCUSED_REMOVED_PROPERTY = "lastFocusedRemoved";
+
+    public static JTextComponent lastFocusedComponent() {
+        return null;
+    }
+
+    public static JTextComponent focusedComponent() {
+        return null;
+    }
+
+    public static List<? extends JTextComponent> componentList() {
+        return Collections.emptyList();
+    }
+
+    public static void addPropertyChangeListener(PropertyChangeListener l) {
+    }
+
+    public static void removePropertyChangeListener(PropertyChangeListener l) {
+    }
+}
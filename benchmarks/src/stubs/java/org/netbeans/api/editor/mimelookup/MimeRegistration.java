@@ -0,0 +1,9 @@
+package org.netbeans.api.editor.mimelookup;
+
+public @interface MimeRegistration {
+    String mimeType();
+
+    Class<?> service();
+
+    int position() default Integer.MAX_VALUE;
+}
@@ -0,0 +1,40 @@
+package org.netbeans.api.progress;
+
+/**
+ * Headless stand-in for ProgressHandle. Like the real one, it refuses to
+ * be started twice.
+ */
+public class ProgressHandle {
+    private boolean started;
+
+    public synchronized void start() {
+        start(0);
+    }
+
+    public synchronized void start(int workunits) {
+        if (started)
+            throw new IllegalStateException("Progress already started");
+        started = true;
+    }
+
+    public void switchToDeterminate(int workunits) {
+    }
+
+    public void switchToIndeterminate() {
+    }
+
+    public void progress(int workunit) {
+    }
+
+    public void progress(String message) {
+    }
+
+    public void progress(String message, int workunit) {
+    }
+
+    public void setDisplayName(String name) {
+    }
+
+    public void finish() {
+    }
+}
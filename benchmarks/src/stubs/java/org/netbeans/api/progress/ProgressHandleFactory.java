@@ -0,0 +1,13 @@
+package org.netbeans.api.progress;
+
+import org.openide.util.Cancellable;
+
+public class ProgressHandleFactory {
+    public static ProgressHandle createHandle(String displayName) {
+        return new ProgressHandle();
+    }
+
+    public static ProgressHandle createHandle(String displayName, Cancellable allowToCancel) {
+        return new ProgressHandle();
+    }
+}
@@ -0,0 +1,23 @@
+package org.netbeans.api.project;
+
+import org.netbeans.api.project.ui.OpenProjects;
+import org.openide.filesystems.FileObject;
+
+/**
+ * Headless stand-in for FileOwnerQuery. Owners are the open projects
+ * whose folder contains the file.
+ */
+public class FileOwnerQuery {
+    public static Project getOwner(FileObject file) {
+        Project owner = null;
+        int depth = -1;
+        for (Project project : OpenProjects.getDefault().getOpenProjects()) {
+            String folder = project.getProjectDirectory().getPath();
+            if ((file.getPath().equals(folder) || file.getPath().startsWith(folder + "/")) && folder.length() > depth) {
+                owner = project;
+                depth = folder.length();
+            }
+        }
+        return owner;
+    }
+}
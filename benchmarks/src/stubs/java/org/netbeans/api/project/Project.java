@@ -0,0 +1,10 @@
+package org.netbeans.api.project;
+
+import org.openide.filesystems.FileObject;
+import org.openide.util.Lookup;
+
+public interface Project {
+    FileObject getProjectDirectory();
+
+    Lookup getLookup();
+}
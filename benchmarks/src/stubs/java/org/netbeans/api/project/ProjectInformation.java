@@ -0,0 +1,18 @@
+package org.netbeans.api.project;
+
+import java.beans.PropertyChangeListener;
+
+public interface ProjectInformation {
+    String PROP_NAME = "name";
+    String PROP_DISPLAY_NAME = "displayName";
+
+    String getName();
+
+    String getDisplayName();
+
+    Project getProject();
+
+    void addPropertyChangeListener(PropertyChangeListener listener);
+
+    void removePropertyChangeListener(PropertyChangeListener listener);
+}
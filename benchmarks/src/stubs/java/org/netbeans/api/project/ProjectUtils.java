@@ -0,0 +1,37 @@
+package org.netbeans.api.project;
+
+import java.beans.PropertyChangeListener;
+
+/**
+ * Headless stand-in for ProjectUtils. Like the real one, it returns a new
+ * wrapper around the project's own information on every call.
+ */
+public class ProjectUtils {
+    public static ProjectInformation getInformation(final Project project) {
+        final ProjectInformation info = project.getLookup().lookup(ProjectInformation.class);
+        return new ProjectInformation() {
+            @Override
+            public String getName() {
+                return info != null ? info.getName() : project.getProjectDirectory().getNameExt();
+            }
+
+            @Override
+            public String getDisplayName() {
+                return info != null ? info.getDisplayName() : getName();
+            }
+
+            @Override
+            public Project getProject() {
+                return project;
+            }
+
+            @Override
+            public void addPropertyChangeListener(PropertyChangeListener listener) {
+            }
+
+            @Override
+            public void removePropertyChangeListener(PropertyChangeListener listener) {
+            }
+        };
+    }
+}
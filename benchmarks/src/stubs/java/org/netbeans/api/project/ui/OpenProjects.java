@@ -0,0 +1,42 @@
+package org.netbeans.api.project.ui;
+
+import java.beans.PropertyChangeListener;
+import java.beans.PropertyChangeSupport;
+import org.netbeans.api.project.Project;
+
+/**
+ * Headless stand-in for OpenProjects. Tests open and close projects with
+ * setOpenProjects.
+ */
+public class OpenProjects {
+    public static final String PROPERTY_OPEN_PROJECTS = "openProjects";
+    private static final OpenProjects DEFAULT = new OpenProjects();
+
+    private final PropertyChangeSupport support = new PropertyChangeSupport(this);
+    private Project[] open = new Project[0];
+
+    public static OpenProjects getDefault() {
+        return DEFAULT;
+    }
+
+    public synchronized Project[] getOpenProjects() {
+        return open.clone();
+    }
+
+    public void setOpenProjects(Project... projects) {
+        Project[] old;
+        synchronized (this) {
+            old = open;
+            open = projects.clone();
+        }
+        support.firePropertyChange(PROPERTY_OPEN_PROJECTS, old, projects.clone());
+    }
+
+    public void addPropertyChangeListener(PropertyChangeListener listener) {
+        support.addPropertyChangeListener(listener);
+    }
+
+    public void removePropertyChangeListener(PropertyChangeListener listener) {
+        support.removePropertyChangeListener(listener);
+    }
+}
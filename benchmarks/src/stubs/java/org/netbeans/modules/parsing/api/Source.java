@@ -0,0 +1,25 @@
+package org.netbeans.modules.parsing.api;
+
+import javax.swing.text.Document;
+import org.openide.filesystems.FileObject;
+
+/**
+ * Headless stand-in for Source. A document's file is the FileObject in
+ * its stream description property.
+ */
+public class Source {
+    private final FileObject fileObject;
+
+    private Source(FileObject fileObject) {
+        this.fileObject = fileObject;
+    }
+
+    public static Source create(Document document) {
+        Object description = document.getProperty(Document.StreamDescriptionProperty);
+        return new Source(description instanceof FileObject ? (FileObject) description : null);
+    }
+
+    public FileObject getFileObject() {
+        return fileObject;
+    }
+}
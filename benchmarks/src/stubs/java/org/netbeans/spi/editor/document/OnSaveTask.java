@@ -0,0 +1,27 @@
+package org.netbeans.spi.editor.document;
+
+import javax.swing.text.Document;
+
+public interface OnSaveTask {
+    void performTask();
+
+    void runLocked(Runnable run);
+
+    boolean cancel();
+
+    interface Factory {
+        OnSaveTask createTask(Context context);
+    }
+
+    final class Context {
+        private final Document document;
+
+        Context(Document document) {
+            this.document = document;
+        }
+
+        public Document getDocument() {
+            return document;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package org.netbeans.spi.options;
+
+import java.beans.PropertyChangeListener;
+import javax.swing.JComponent;
+import org.openide.util.HelpCtx;
+import org.openide.util.Lookup;
+
+public abstract class OptionsPanelController {
+    public static final String PROP_CHANGED = "changed";
+    public static final String PROP_VALID = "valid";
+
+    public @interface TopLevelRegistration {
+        String categoryName();
+
+        String iconBase();
+
+        String keywords();
+
+        String keywordsCategory();
+
+        int position() default Integer.MAX_VALUE;
+    }
+
+    public abstract void update();
+
+    public abstract void applyChanges();
+
+    public abstract void cancel();
+
+    public abstract boolean isValid();
+
+    public abstract boolean isChanged();
+
+    public abstract JComponent getComponent(Lookup masterLookup);
+
+    public abstract HelpCtx getHelpCtx();
+
+    public abstract void addPropertyChangeListener(PropertyChangeListener l);
+
+    public abstract void removePropertyChangeListener(PropertyChangeListener l);
+}
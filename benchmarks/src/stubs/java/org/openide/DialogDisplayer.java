@@ -0,0 +1,16 @@
+package org.openide;
+
+/**
+ * Headless stand-in for DialogDisplayer. Every dialog is cancelled.
+ */
+public class DialogDisplayer {
+    private static final DialogDisplayer DEFAULT = new DialogDisplayer();
+
+    public static DialogDisplayer getDefault() {
+        return DEFAULT;
+    }
+
+    public Object notify(NotifyDescriptor descriptor) {
+        return NotifyDescriptor.CANCEL_OPTION;
+    }
+}
@@ -0,0 +1,32 @@
+package org.openide;
+
+/**
+ * Headless stand-in for NotifyDescriptor.
+ */
+public class NotifyDescriptor {
+    public static final int ERROR_MESSAGE = 0;
+    public static final int OK_CANCEL_OPTION = 2;
+    public static final int QUESTION_MESSAGE = 3;
+    public static final Object OK_OPTION = new Object();
+    public static final Object CANCEL_OPTION = new Object();
+
+    public static class Message extends NotifyDescriptor {
+        public Message(Object message, int messageType) {
+        }
+    }
+
+    public static class InputLine extends NotifyDescriptor {
+        private String inputText = "";
+
+        public InputLine(String text, String title, int optionType, int messageType) {
+        }
+
+        public void setInputText(String text) {
+            inputText = text;
+        }
+
+        public String getInputText() {
+            return inputText;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package org.openide.awt;
+
+import javax.swing.AbstractButton;
+import javax.swing.JLabel;
+
+public class Mnemonics {
+    public static void setLocalizedText(AbstractButton item, String text) {
+        item.setText(text);
+    }
+
+    public static void setLocalizedText(JLabel item, String text) {
+        item.setText(text);
+    }
+}
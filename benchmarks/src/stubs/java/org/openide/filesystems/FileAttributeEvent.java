@@ -0,0 +1,7 @@
+package org.openide.filesystems;
+
+public class FileAttributeEvent extends FileEvent {
+    public FileAttributeEvent(FileObject src) {
+        super(src);
+    }
+}
@@ -0,0 +1,27 @@
+package org.openide.filesystems;
+
+public class FileChangeAdapter implements FileChangeListener {
+    @Override
+    public void fileFolderCreated(FileEvent fe) {
+    }
+
+    @Override
+    public void fileDataCreated(FileEvent fe) {
+    }
+
+    @Override
+    public void fileChanged(FileEvent fe) {
+    }
+
+    @Override
+    public void fileDeleted(FileEvent fe) {
+    }
+
+    @Override
+    public void fileRenamed(FileRenameEvent fe) {
+    }
+
+    @Override
+    public void fileAttributeChanged(FileAttributeEvent fe) {
+    }
+}
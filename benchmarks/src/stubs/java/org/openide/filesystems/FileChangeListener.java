@@ -0,0 +1,17 @@
+package org.openide.filesystems;
+
+import java.util.EventListener;
+
+public interface FileChangeListener extends EventListener {
+    void fileFolderCreated(FileEvent fe);
+
+    void fileDataCreated(FileEvent fe);
+
+    void fileChanged(FileEvent fe);
+
+    void fileDeleted(FileEvent fe);
+
+    void fileRenamed(FileRenameEvent fe);
+
+    void fileAttributeChanged(FileAttributeEvent fe);
+}
@@ -0,0 +1,13 @@
+package org.openide.filesystems;
+
+import java.util.EventObject;
+
+public class FileEvent extends EventObject {
+    public FileEvent(FileObject src) {
+        super(src);
+    }
+
+    public FileObject getFile() {
+        return (FileObject) getSource();
+    }
+}
@@ -0,0 +1,22 @@
+package org.openide.filesystems;
+
+/**
+ * Headless stand-in for FileObject. Tests and benchmarks subclass it.
+ */
+public abstract class FileObject {
+    public abstract String getPath();
+
+    public abstract String getNameExt();
+
+    public abstract FileObject getParent();
+
+    public boolean isValid() {
+        return true;
+    }
+
+    public void addFileChangeListener(FileChangeListener listener) {
+    }
+
+    public void removeFileChangeListener(FileChangeListener listener) {
+    }
+}
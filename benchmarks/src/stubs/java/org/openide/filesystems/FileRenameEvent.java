@@ -0,0 +1,7 @@
+package org.openide.filesystems;
+
+public class FileRenameEvent extends FileEvent {
+    public FileRenameEvent(FileObject src) {
+        super(src);
+    }
+}
@@ -0,0 +1,13 @@
+package org.openide.filesystems;
+
+import java.io.File;
+
+public class FileUtil {
+    public static File toFile(FileObject fileObject) {
+        return new File(fileObject.getPath());
+    }
+
+    public static FileChangeListener weakFileChangeListener(FileChangeListener listener, Object source) {
+        return listener;
+    }
+}
@@ -0,0 +1,13 @@
+package org.openide.modules;
+
+public class ModuleInstall {
+    public void restored() {
+    }
+
+    public boolean closing() {
+        return true;
+    }
+
+    public void close() {
+    }
+}
@@ -0,0 +1,4 @@
+package org.openide.modules;
+
+public @interface OnStop {
+}
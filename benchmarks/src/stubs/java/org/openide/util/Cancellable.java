@@ -0,0 +1,5 @@
+package org.openide.util;
+
+public interface Cancellable {
+    boolean cancel();
+}
@@ -0,0 +1,4 @@
+package org.openide.util;
+
+public class HelpCtx {
+}
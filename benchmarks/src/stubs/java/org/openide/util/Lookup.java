@@ -0,0 +1,15 @@
+package org.openide.util;
+
+/**
+ * Headless stand-in for the NetBeans Lookup API.
+ */
+public abstract class Lookup {
+    public static final Lookup EMPTY = new Lookup() {
+        @Override
+        public <T> T lookup(Class<T> clazz) {
+            return null;
+        }
+    };
+
+    public abstract <T> T lookup(Class<T> clazz);
+}
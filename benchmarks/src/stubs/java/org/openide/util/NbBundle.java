@@ -0,0 +1,22 @@
+package org.openide.util;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * Headless stand-in for NbBundle. Messages are their keys.
+ */
+public class NbBundle {
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface Messages {
+        String[] value();
+    }
+
+    public static String getMessage(Class<?> clazz, String key) {
+        return key;
+    }
+
+    public static String getMessage(Class<?> clazz, String key, Object param) {
+        return key;
+    }
+}
@@ -0,0 +1,68 @@
+package org.openide.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.prefs.AbstractPreferences;
+import java.util.prefs.Preferences;
+
+/**
+ * Headless stand-in for NbPreferences, kept in memory for the life of the
+ * JVM.
+ */
+public class NbPreferences {
+    private static final Preferences preferences = new MemoryPreferences();
+
+    public static Preferences forModule(Class<?> clazz) {
+        return preferences;
+    }
+
+    private static class MemoryPreferences extends AbstractPreferences {
+        private final Map<String, String> values = new HashMap<String, String>();
+
+        MemoryPreferences() {
+            super(null, "");
+        }
+
+        @Override
+        protected void putSpi(String key, String value) {
+            values.put(key, value);
+        }
+
+        @Override
+        protected String getSpi(String key) {
+            return values.get(key);
+        }
+
+        @Override
+        protected void removeSpi(String key) {
+            values.remove(key);
+        }
+
+        @Override
+        protected void removeNodeSpi() {
+        }
+
+        @Override
+        protected String[] keysSpi() {
+            return values.keySet().toArray(new String[values.size()]);
+        }
+
+        @Override
+        protected String[] childrenNamesSpi() {
+            return new String[0];
+        }
+
+        @Override
+        protected AbstractPreferences childSpi(String name) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected void syncSpi() {
+        }
+
+        @Override
+        protected void flushSpi() {
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package org.openide.util;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless stand-in for RequestProcessor, backed by a scheduled thread
+ * pool of daemon threads with the processor's throughput.
+ */
+public class RequestProcessor implements Executor {
+    private static final RequestProcessor DEFAULT = new RequestProcessor("Default RequestProcessor", 50);
+
+    private final ScheduledThreadPoolExecutor executor;
+    private final ThreadLocal<Boolean> inProcessor = new ThreadLocal<Boolean>();
+
+    public RequestProcessor(String name) {
+        this(name, 1);
+    }
+
+    public RequestProcessor(String name, int throughput) {
+        this(name, throughput, false);
+    }
+
+    public RequestProcessor(final String name, int throughput, boolean interruptThread) {
+        executor = new ScheduledThreadPoolExecutor(throughput, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        inProcessor.set(Boolean.TRUE);
+                        r.run();
+                    }
+                }, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public static RequestProcessor getDefault() {
+        return DEFAULT;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        post(command);
+    }
+
+    public Task post(Runnable runnable) {
+        return post(runnable, 0);
+    }
+
+    public Task post(Runnable runnable, int delay) {
+        Task task = create(runnable);
+        task.schedule(delay);
+        return task;
+    }
+
+    public Task create(Runnable runnable) {
+        return new Task(runnable);
+    }
+
+    public Task create(Runnable runnable, boolean initiallyFinished) {
+        Task task = new Task(runnable);
+        if (initiallyFinished)
+            task.markFinished();
+        return task;
+    }
+
+    public boolean isRequestProcessorThread() {
+        return Boolean.TRUE.equals(inProcessor.get());
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public final class Task extends org.openide.util.Task {
+        private ScheduledFuture<?> future;
+        private long due;
+
+        Task(Runnable runnable) {
+            super(runnable);
+        }
+
+        /**
+         * Runs the task after delay milliseconds, replacing an earlier
+         * schedule that hasn't started yet.
+         */
+        public synchronized void schedule(int delay) {
+            if (future != null)
+                future.cancel(false);
+            due = System.currentTimeMillis() + delay;
+            future = executor.schedule(this, delay, TimeUnit.MILLISECONDS);
+        }
+
+        public synchronized boolean cancel() {
+            return future != null && future.cancel(false);
+        }
+
+        public synchronized int getDelay() {
+            return (int) Math.max(0, due - System.currentTimeMillis());
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.openide.util;
+
+/**
+ * Headless stand-in for the NetBeans Task API.
+ */
+public class Task implements Runnable {
+    private final Runnable runnable;
+    private boolean finished;
+
+    public Task(Runnable runnable) {
+        this.runnable = runnable;
+    }
+
+    protected Task() {
+        this(null);
+    }
+
+    @Override
+    public void run() {
+        synchronized (this) {
+            finished = false;
+        }
+        try {
+            if (runnable != null)
+                runnable.run();
+        } finally {
+            synchronized (this) {
+                finished = true;
+                notifyAll();
+            }
+        }
+    }
+
+    public synchronized boolean isFinished() {
+        return finished;
+    }
+
+    public synchronized void waitFinished() {
+        while (!finished) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    public synchronized boolean waitFinished(long milliseconds) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + milliseconds;
+        while (!finished) {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0)
+                return false;
+            wait(left);
+        }
+        return true;
+    }
+
+    synchronized void markFinished() {
+        finished = true;
+        notifyAll();
+    }
+}
@@ -0,0 +1,4 @@
+package org.openide.windows;
+
+public @interface OnShowing {
+}
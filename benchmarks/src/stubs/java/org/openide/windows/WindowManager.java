@@ -0,0 +1,16 @@
+package org.openide.windows;
+
+/**
+ * Headless stand-in for WindowManager. The UI is always ready.
+ */
+public class WindowManager {
+    private static final WindowManager DEFAULT = new WindowManager();
+
+    public static WindowManager getDefault() {
+        return DEFAULT;
+    }
+
+    public void invokeWhenUIReady(Runnable runnable) {
+        runnable.run();
+    }
+}
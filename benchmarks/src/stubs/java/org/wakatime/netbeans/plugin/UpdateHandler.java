@@ -0,0 +1,10 @@
+package org.wakatime.netbeans.plugin;
+
+/**
+ * Stands in for the plugin's UpdateHandler, which only talks to the IDE's
+ * update center and is left out of the headless build.
+ */
+public final class UpdateHandler {
+    public static void checkAndHandleUpdates() {
+    }
+}
@@ -0,0 +1,24 @@
+/* ==========================================================
+File:        CliCommandTemplatesTest.java
+Description: Checks that cached project names follow renames.
+Maintainer:  WakaTime <support@wakatime.com>
+License:     BSD, see LICENSE for more details.
+Website:     https://wakatime.com/
+===========================================================*/
+
+package org.wakatime.netbeans.plugin;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class CliCommandTemplatesTest {
+
+    @Test
+    public void renamedProjectIsNotServedFromCache() {
+        Fixtures.TestProject project = new Fixtures.TestProject("/work/rename-test", "Before");
+        assertEquals("Before", CliCommandTemplates.projectName(project));
+        project.rename("After");
+        assertEquals("After", CliCommandTemplates.projectName(project));
+    }
+}
@@ -0,0 +1,213 @@
+/* ==========================================================
+File:        CliInstallerTest.java
+Description: Installs wakatime-cli from a local server that supports ranges.
+Maintainer:  WakaTime <support@wakatime.com>
+License:     BSD, see LICENSE for more details.
+Website:     https://wakatime.com/
+===========================================================*/
+
+package org.wakatime.netbeans.plugin;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CliInstallerTest {
+    private static final String VERSION = "v1.90.0";
+    private static final String ARCHIVE = "wakatime-cli-linux-amd64.zip";
+    private static final String BINARY = "wakatime-cli-linux-amd64";
+
+    private enum Mode { RANGES, IGNORE_RANGES, WRONG_RANGE }
+
+    private HttpServer server;
+    private File outputDir;
+    private byte[] binary;
+    private byte[] archive;
+    private volatile String checksum;
+    private volatile Mode mode = Mode.RANGES;
+    private volatile String lastRange;
+    private volatile int lastStatus;
+    private volatile long bytesServed;
+
+    @Before
+    public void setUp() throws IOException {
+        Fixtures.useTempHome();
+        outputDir = Files.createTempDirectory("wakatime-cli").toFile();
+        binary = new byte[300 * 1024];
+        new Random(42).nextBytes(binary);
+        archive = zip(BINARY, binary);
+        checksum = sha256(archive);
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/" + VERSION + "/checksums.txt", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] body = (checksum + "  " + ARCHIVE + "\n").getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+                exchange.close();
+            }
+        });
+        server.createContext("/" + VERSION + "/" + ARCHIVE, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                serveArchive(exchange);
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        Dependencies.recursiveDelete(outputDir);
+    }
+
+    private void serveArchive(HttpExchange exchange) throws IOException {
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        lastRange = range;
+        long from = range == null ? 0 : Long.parseLong(range.substring("bytes=".length(), range.indexOf('-')));
+        if (range == null || mode == Mode.IGNORE_RANGES) {
+            send(exchange, 200, 0);
+        } else if (from >= archive.length) {
+            exchange.getResponseHeaders().set("Content-Range", "bytes */" + archive.length);
+            lastStatus = 416;
+            exchange.sendResponseHeaders(416, -1);
+            exchange.close();
+        } else {
+            long start = mode == Mode.WRONG_RANGE ? 0 : from;
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + (archive.length - 1) + "/" + archive.length);
+            send(exchange, 206, (int) start);
+        }
+    }
+
+    private void send(HttpExchange exchange, int status, int from) throws IOException {
+        lastStatus = status;
+        bytesServed = archive.length - from;
+        exchange.sendResponseHeaders(status, archive.length - from);
+        exchange.getResponseBody().write(archive, from, archive.length - from);
+        exchange.close();
+    }
+
+    private boolean install() {
+        String base = "http://127.0.0.1:" + server.getAddress().getPort() + "/" + VERSION + "/";
+        return CliInstaller.install(base + ARCHIVE, base + "checksums.txt", outputDir);
+    }
+
+    private File partFile() {
+        return new File(outputDir, VERSION + "-" + ARCHIVE + ".part");
+    }
+
+    private void writePart(byte[] contents) throws IOException {
+        Files.write(partFile().toPath(), contents);
+    }
+
+    private void assertInstalled() throws IOException {
+        assertArrayEquals(binary, Files.readAllBytes(new File(outputDir, BINARY).toPath()));
+        assertFalse(partFile().exists());
+        assertFalse(new File(outputDir, BINARY + ".download").exists());
+    }
+
+    @Test
+    public void resumesFromEndOfPartFile() throws IOException {
+        int offset = archive.length / 3;
+        writePart(Arrays.copyOf(archive, offset));
+
+        assertTrue(install());
+        assertEquals("bytes=" + offset + "-", lastRange);
+        assertEquals(206, lastStatus);
+        assertEquals(archive.length - offset, bytesServed);
+        assertInstalled();
+    }
+
+    @Test
+    public void restartsWhenServerIgnoresRange() throws IOException {
+        byte[] stale = new byte[archive.length / 2];
+        Arrays.fill(stale, (byte) 0x5a);
+        writePart(stale);
+        mode = Mode.IGNORE_RANGES;
+
+        assertTrue(install());
+        assertEquals("bytes=" + stale.length + "-", lastRange);
+        assertEquals(200, lastStatus);
+        assertEquals(archive.length, bytesServed);
+        assertInstalled();
+    }
+
+    @Test
+    public void installsCompletePartFileOn416() throws IOException {
+        writePart(archive);
+
+        assertTrue(install());
+        assertEquals(416, lastStatus);
+        assertInstalled();
+    }
+
+    @Test
+    public void discardsPartFileOnMismatchedContentRange() throws IOException {
+        writePart(Arrays.copyOf(archive, archive.length / 2));
+        mode = Mode.WRONG_RANGE;
+
+        assertFalse(install());
+        assertEquals(206, lastStatus);
+        assertFalse(partFile().exists());
+        assertFalse(new File(outputDir, BINARY).exists());
+
+        mode = Mode.RANGES;
+        assertTrue(install());
+        assertNull(lastRange);
+        assertInstalled();
+    }
+
+    @Test
+    public void leavesNoBinaryOnChecksumMismatch() throws IOException {
+        checksum = sha256("something else".getBytes(StandardCharsets.UTF_8));
+
+        assertFalse(install());
+        assertFalse(new File(outputDir, BINARY).exists());
+        assertFalse(new File(outputDir, BINARY + ".download").exists());
+        assertFalse(partFile().exists());
+    }
+
+    private static byte[] zip(String name, byte[] contents) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ZipOutputStream zip = new ZipOutputStream(bytes);
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(contents);
+        zip.closeEntry();
+        zip.close();
+        return bytes.toByteArray();
+    }
+
+    private static String sha256(byte[] bytes) throws IOException {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(bytes)) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (java.security.NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+}
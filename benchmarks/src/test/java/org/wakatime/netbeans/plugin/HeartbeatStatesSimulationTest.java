@@ -0,0 +1,197 @@
+/* ==========================================================
+File:        HeartbeatStatesSimulationTest.java
+Description: Replays keystroke traces through the adaptive heartbeat throttle.
+Maintainer:  WakaTime <support@wakatime.com>
+License:     BSD, see LICENSE for more details.
+Website:     https://wakatime.com/
+===========================================================*/
+
+package org.wakatime.netbeans.plugin;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Feeds keystroke traces to HeartbeatStates on a simulated clock, with the
+ * trailing heartbeat check run every second, and compares the heartbeats
+ * it lets through with the keystrokes themselves. Time is accounted the
+ * way wakatime-cli joins heartbeats into durations: a gap between two
+ * consecutive heartbeats counts as coding time when it is shorter than
+ * the duration timeout. Each trace reports the heartbeats sent, which is
+ * what wakatime-cli gets spawned for, next to the fixed two minute
+ * throttle and the time lost or gained compared to the keystrokes.
+ */
+public class HeartbeatStatesSimulationTest {
+    private static final long TIMEOUT = HeartbeatStates.CLI_DURATION_TIMEOUT;
+    private static final int FIXED_INTERVAL = WakaTime.FREQUENCY * 60;
+
+    // each trace gets its own day, so their states never interact
+    private static long day = 1700000000L;
+
+    private static class Keystroke {
+        final long time; // seconds
+        final String file;
+
+        Keystroke(long time, String file) {
+            this.time = time;
+            this.file = file;
+        }
+    }
+
+    private static class Result {
+        int sent;
+        int fixedSent;
+        long codingTime;
+        long accountedTime;
+        long fixedAccountedTime;
+
+        double error() {
+            return Math.abs(accountedTime - codingTime) / (double) codingTime;
+        }
+
+        double fixedError() {
+            return Math.abs(fixedAccountedTime - codingTime) / (double) codingTime;
+        }
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws IOException {
+        Fixtures.useTempHome();
+    }
+
+    private static List<Keystroke> trace(String name) {
+        day += 24 * 60 * 60;
+        return new ArrayList<Keystroke>(Collections.singletonList(new Keystroke(day, "/" + name + "/start")));
+    }
+
+    /**
+     * Typing about twice a second in one file for an hour.
+     */
+    private static List<Keystroke> sustainedTyping() {
+        List<Keystroke> trace = trace("sustained");
+        Random random = new Random(1);
+        for (long t = day; t < day + 60 * 60; t += 1 + random.nextInt(2)) {
+            trace.add(new Keystroke(t, "/sustained/Main.java"));
+        }
+        return trace;
+    }
+
+    /**
+     * Editing a class and its test, switching every half a minute.
+     */
+    private static List<Keystroke> alternatingFiles() {
+        List<Keystroke> trace = trace("alternating");
+        for (long t = day; t < day + 60 * 60; t++) {
+            String file = (t - day) / 30 % 2 == 0 ? "/alternating/Main.java" : "/alternating/MainTest.java";
+            trace.add(new Keystroke(t, file));
+        }
+        return trace;
+    }
+
+    /**
+     * Bursts of typing in a handful of files, separated by pauses of up to
+     * twenty minutes, some longer than the duration timeout.
+     */
+    private static List<Keystroke> burstsWithPauses() {
+        List<Keystroke> trace = trace("bursts");
+        Random random = new Random(2);
+        long t = day;
+        for (int burst = 0; burst < 30; burst++) {
+            String file = "/bursts/File" + random.nextInt(5) + ".java";
+            long end = t + 30 + random.nextInt(10 * 60);
+            for (; t < end; t += 1 + random.nextInt(4)) {
+                trace.add(new Keystroke(t, file));
+            }
+            t += random.nextInt(20 * 60);
+        }
+        return trace;
+    }
+
+    private static Result replay(List<Keystroke> trace) {
+        Result result = new Result();
+        List<Long> sent = new ArrayList<Long>();
+        List<Long> fixedSent = new ArrayList<Long>();
+        List<Long> keystrokes = new ArrayList<Long>();
+        Map<String, Long> fixedLastSent = new HashMap<String, Long>();
+        long end = trace.get(trace.size() - 1).time + TIMEOUT;
+        int next = 0;
+        for (long now = trace.get(0).time; now <= end; now++) {
+            for (; next < trace.size() && trace.get(next).time == now; next++) {
+                Keystroke keystroke = trace.get(next);
+                keystrokes.add(now);
+                if (HeartbeatStates.shouldSend(keystroke.file, null, now, false)) {
+                    sent.add(now);
+                    HeartbeatStates.dequeued(keystroke.file);
+                }
+                Long last = fixedLastSent.get(keystroke.file);
+                if (last == null || last + FIXED_INTERVAL < now) {
+                    fixedLastSent.put(keystroke.file, now);
+                    fixedSent.add(now);
+                }
+            }
+            List<Heartbeat> trailing = new ArrayList<Heartbeat>();
+            HeartbeatStates.collectTrailing(now, trailing);
+            for (Heartbeat heartbeat : trailing) {
+                sent.add(heartbeat.timestamp / 1000);
+                HeartbeatStates.dequeued(heartbeat.entity);
+            }
+        }
+        Collections.sort(sent);
+        result.sent = sent.size();
+        result.fixedSent = fixedSent.size();
+        result.codingTime = accountedTime(keystrokes);
+        result.accountedTime = accountedTime(sent);
+        result.fixedAccountedTime = accountedTime(fixedSent);
+        return result;
+    }
+
+    private static long accountedTime(List<Long> times) {
+        long total = 0;
+        for (int i = 1; i < times.size(); i++) {
+            long gap = times.get(i) - times.get(i - 1);
+            if (gap < TIMEOUT)
+                total += gap;
+        }
+        return total;
+    }
+
+    private static Result run(String name, List<Keystroke> trace) {
+        Result result = replay(trace);
+        System.out.println(String.format("%-12s %5d keystrokes, coding %5ds | adaptive: %3d heartbeats, %5ds, error %.2f%% | fixed %ds: %3d heartbeats, %5ds, error %.2f%%",
+            name, trace.size(), result.codingTime, result.sent, result.accountedTime, result.error() * 100,
+            FIXED_INTERVAL, result.fixedSent, result.fixedAccountedTime, result.fixedError() * 100));
+        return result;
+    }
+
+    @Test
+    public void sustainedTypingSendsFewerHeartbeats() {
+        Result result = run("sustained", sustainedTyping());
+        assertTrue("heartbeats " + result.sent + " vs " + result.fixedSent, result.sent * 2 < result.fixedSent);
+        assertTrue("error " + result.error(), result.error() <= result.fixedError());
+    }
+
+    @Test
+    public void alternatingFilesDoesNotWidenInterval() {
+        Result result = run("alternating", alternatingFiles());
+        // every switch lands on a file whose interval was reset, so the throttle matches the fixed one
+        assertEquals(result.fixedSent, result.sent);
+        assertEquals(result.fixedAccountedTime, result.accountedTime);
+    }
+
+    @Test
+    public void burstsKeepTimeAccounting() {
+        Result result = run("bursts", burstsWithPauses());
+        assertTrue("heartbeats " + result.sent + " vs " + result.fixedSent, result.sent <= result.fixedSent * 1.1);
+        assertTrue("error " + result.error() + " vs " + result.fixedError(), result.error() <= result.fixedError() + 0.005);
+    }
+}
@@ -0,0 +1,142 @@
+/* ==========================================================
+File:        HttpTransportTest.java
+Description: Posts heartbeats to a local stand-in for the WakaTime API.
+Maintainer:  WakaTime <support@wakatime.com>
+License:     BSD, see LICENSE for more details.
+Website:     https://wakatime.com/
+===========================================================*/
+
+package org.wakatime.netbeans.plugin;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HttpTransportTest {
+    private static final String API_KEY = "0a1b2c3d-4e5f-6789-abcd-ef0123456789";
+
+    private HttpServer server;
+    private final List<Request> requests = Collections.synchronizedList(new ArrayList<Request>());
+    private volatile int status = 201;
+    private File home;
+
+    private static class Request {
+        String method;
+        String path;
+        String authorization;
+        String encoding;
+        String body;
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        home = Fixtures.useTempHome();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/v1/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                Request request = new Request();
+                request.method = exchange.getRequestMethod();
+                request.path = exchange.getRequestURI().getPath();
+                request.authorization = exchange.getRequestHeaders().getFirst("Authorization");
+                request.encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+                InputStream in = exchange.getRequestBody();
+                if ("gzip".equals(request.encoding))
+                    in = new GZIPInputStream(in);
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                HttpRequests.copy(in, body);
+                request.body = new String(body.toByteArray(), StandardCharsets.UTF_8);
+                requests.add(request);
+                byte[] response = "{\"responses\":[]}".getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(status, response.length);
+                exchange.getResponseBody().write(response);
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private void writeConfig(String extraSettings) throws IOException {
+        Fixtures.writeConfig(home, "[settings]\n"
+            + "api_key = " + API_KEY + "\n"
+            + "api_url = http://127.0.0.1:" + server.getAddress().getPort() + "/api/v1/\n"
+            + "heartbeat_transport = http\n"
+            + extraSettings);
+    }
+
+    private static List<Heartbeat> batch(String... files) {
+        List<Heartbeat> batch = new ArrayList<Heartbeat>();
+        for (String file : files) {
+            batch.add(new Heartbeat(file, "app", false, 1700000000123L));
+        }
+        return batch;
+    }
+
+    @Test
+    public void postsGzippedBatchWithBasicAuth() throws IOException {
+        writeConfig("");
+        assertTrue(HttpTransport.isEnabled());
+        assertTrue(HttpTransport.send(batch("/home/user/app/src/Main.java", "/home/user/app/README.md")));
+
+        assertEquals(1, requests.size());
+        Request request = requests.get(0);
+        assertEquals("POST", request.method);
+        assertEquals("/api/v1/users/current/heartbeats.bulk", request.path);
+        assertEquals("gzip", request.encoding);
+        String expected = "Basic " + java.util.Base64.getEncoder().encodeToString(API_KEY.getBytes(StandardCharsets.UTF_8));
+        assertEquals(expected, request.authorization);
+        assertTrue(request.body, request.body.startsWith("[{\"entity\":\"/home/user/app/src/Main.java\",\"type\":\"file\",\"time\":1700000000.123"));
+        assertTrue(request.body, request.body.contains("\"project\":\"app\""));
+        assertFalse(request.body, request.body.contains("\"language\""));
+        assertFalse(request.body, request.body.contains("\"branch\""));
+    }
+
+    @Test
+    public void reportsFailureSoCallerFallsBack() throws IOException {
+        writeConfig("");
+        status = 500;
+        assertFalse(HttpTransport.send(batch("/home/user/app/src/Main.java")));
+        assertEquals(1, requests.size());
+    }
+
+    @Test
+    public void leavesCliOnlySettingsToCli() throws IOException {
+        for (String setting : Arrays.asList(
+                "hide_file_names = true\n",
+                "hide_project_names = true\n",
+                "exclude_unknown_project = true\n",
+                "exclude =\n    ^/tmp/\n",
+                "include =\n    .*\\.java$\n")) {
+            writeConfig(setting);
+            assertFalse(setting, HttpTransport.isEnabled());
+        }
+        writeConfig("hide_file_names = false\n\n[projectmap]\nprojects/foo = bar\n");
+        assertFalse(HttpTransport.isEnabled());
+        writeConfig("hide_file_names = false\n");
+        assertTrue(HttpTransport.isEnabled());
+        assertTrue(requests.isEmpty());
+    }
+}
@@ -0,0 +1,80 @@
+/* ==========================================================
+File:        CircuitBreaker.java
+Description: Stops launching wakatime-cli while it keeps failing.
+Maintainer:  WakaTime <support@wakatime.com>
+License:     BSD, see LICENSE for more details.
+Website:     https://wakatime.com/
+===========================================================*/
+
+package org.wakatime.netbeans.plugin;
+
+/**
+ * Opens after a run of consecutive failures. While open, callers should
+ * hold on to their work instead of attempting it. After the cooldown one
+ * probe is let through: success closes the breaker, failure re-opens it.
+ */
+public class CircuitBreaker {
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    public static final int DEFAULT_COOLDOWN = 60; // seconds
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long cooldown; // milliseconds
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private long openedAt = 0;
+
+    public CircuitBreaker(String name, int failureThreshold, long cooldown) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.cooldown = cooldown;
+    }
+
+    public synchronized State getState() {
+        return this.state;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return this.consecutiveFailures;
+    }
+
+    /**
+     * Returns true when an attempt may be made now.
+     */
+    public synchronized boolean allowRequest() {
+        switch (this.state) {
+            case OPEN:
+                if (System.currentTimeMillis() - this.openedAt < this.cooldown)
+                    return false;
+                transition(State.HALF_OPEN);
+                return true;
+            case HALF_OPEN:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    public synchronized void recordSuccess() {
+        this.consecutiveFailures = 0;
+        if (this.state != State.CLOSED)
+            transition(State.CLOSED);
+    }
+
+    public synchronized void recordFailure() {
+        this.consecutiveFailures++;
+        if (this.state == State.HALF_OPEN || (this.state == State.CLOSED && this.consecutiveFailures >= this.failureThreshold)) {
+            this.openedAt = System.currentTimeMillis();
+            transition(State.OPEN);
+        }
+    }
+
+    private void transition(State newState) {
+        WakaTime.debug(this.name + " circuit breaker " + this.state + " -> " + newState);
+        if (newState == State.OPEN)
+            WakaTime.warn(this.name + " failed " + this.consecutiveFailures + " times in a row, pausing for " + (this.cooldown / 1000) + " seconds");
+        this.state = newState;
+    }
+}
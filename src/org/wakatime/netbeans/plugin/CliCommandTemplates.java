@@ -0,0 +1,131 @@
+/* ==========================================================
+File:        CliCommandTemplates.java
+Description: Caches the parts of a wakatime-cli command that rarely change.
+Maintainer:  WakaTime <support@wakatime.com>
+License:     BSD, see LICENSE for more details.
+Website:     https://wakatime.com/
+===========================================================*/
+
+package org.wakatime.netbeans.plugin;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import org.netbeans.api.project.Project;
+import org.netbeans.api.project.ProjectInformation;
+import org.netbeans.api.project.ProjectUtils;
+
+/**
+ * Immutable argument prefixes for wakatime-cli, one per project, holding
+ * the CLI location, api key, plugin string and project name. Building a
+ * heartbeat's command only appends its entity, time and flags.
+ *
+ * Call invalidate() after settings change or the CLI is reinstalled.
+ * Project display names are cached too and dropped when a project is
+ * renamed. Projects without a ProjectInformation in their lookup keep
+ * their first name until invalidate() is called.
+ */
+public class CliCommandTemplates {
+    private static final String[] NO_PROJECT = new String[0];
+
+    private static final Map<String, String[]> templates = new HashMap<String, String[]>();
+    private static final Map<Project, String> projectNames = new WeakHashMap<Project, String>();
+
+    private static final PropertyChangeListener renameListener = new PropertyChangeListener() {
+        @Override
+        public void propertyChange(PropertyChangeEvent evt) {
+            String property = evt.getPropertyName();
+            if (ProjectInformation.PROP_DISPLAY_NAME.equals(property) || ProjectInformation.PROP_NAME.equals(property)) {
+                Project project = ((ProjectInformation) evt.getSource()).getProject();
+                synchronized (projectNames) {
+                    projectNames.remove(project);
+                }
+            }
+        }
+    };
+
+    /**
+     * Builds the full command for a heartbeat from its project's template.
+     */
+    public static String[] build(Heartbeat heartbeat, boolean hasExtraHeartbeats) {
+        String[] template = template(heartbeat.getProjectName());
+        int extra = 4 + (heartbeat.isWrite ? 1 : 0) + (heartbeat.position != null ? 6 : 0) + (hasLineChanges(heartbeat) ? 4 : 0) + (hasExtraHeartbeats ? 1 : 0);
+        String[] cmds = Arrays.copyOf(template, template.length + extra);
+        int i = template.length;
+        cmds[i++] = "--entity";
+        cmds[i++] = heartbeat.entity;
+        cmds[i++] = "--time";
+        cmds[i++] = heartbeat.time();
+        if (heartbeat.isWrite)
+            cmds[i++] = "--write";
+        if (heartbeat.position != null) {
+            cmds[i++] = "--lineno";
+            cmds[i++] = Integer.toString(heartbeat.position.lineno);
+            cmds[i++] = "--cursorpos";
+            cmds[i++] = Integer.toString(heartbeat.position.cursorpos);
+            cmds[i++] = "--lines-in-file";
+            cmds[i++] = Integer.toString(heartbeat.position.lines);
+        }
+        if (hasLineChanges(heartbeat)) {
+            cmds[i++] = "--line-additions";
+            cmds[i++] = Integer.toString(heartbeat.lineAdditions);
+            cmds[i++] = "--line-deletions";
+            cmds[i++] = Integer.toString(heartbeat.lineDeletions);
+        }
+        if (hasExtraHeartbeats)
+            cmds[i++] = "--extra-heartbeats";
+        return cmds;
+    }
+
+    private static boolean hasLineChanges(Heartbeat heartbeat) {
+        return heartbeat.lineAdditions != 0 || heartbeat.lineDeletions != 0;
+    }
+
+    public static String projectName(Project project) {
+        synchronized (projectNames) {
+            String name = projectNames.get(project);
+            if (name != null)
+                return name;
+        }
+        // ProjectUtils may wrap the project's information in a new object on
+        // every call, so the listener goes on the one in the project's lookup
+        ProjectInformation info = project.getLookup().lookup(ProjectInformation.class);
+        String name = info != null ? info.getDisplayName() : ProjectUtils.getInformation(project).getDisplayName();
+        synchronized (projectNames) {
+            if (!projectNames.containsKey(project)) {
+                if (info != null)
+                    info.addPropertyChangeListener(renameListener);
+                projectNames.put(project, name);
+            }
+        }
+        return name;
+    }
+
+    public static void invalidate() {
+        synchronized (templates) {
+            templates.clear();
+        }
+    }
+
+    private static String[] template(String projectName) {
+        String key = projectName == null ? "" : projectName;
+        synchronized (templates) {
+            String[] template = templates.get(key);
+            if (template == null) {
+                String[] project = projectName == null ? NO_PROJECT : new String[] { "--project", projectName };
+                template = new String[5 + project.length];
+                template[0] = Dependencies.getCLILocation();
+                template[1] = "--key";
+                template[2] = WakaTime.getApiKey();
+                template[3] = "--plugin";
+                template[4] = WakaTime.IDE_NAME + "/" + WakaTime.IDE_VERSION + " " + WakaTime.IDE_NAME.toLowerCase() + "-wakatime/" + WakaTime.VERSION;
+                System.arraycopy(project, 0, template, 5, project.length);
+                templates.put(key, template);
+            }
+            return template;
+        }
+    }
+}
@@ -0,0 +1,361 @@
+/* ==========================================================
+File:        CliInstaller.java
+Description: Downloads, verifies and extracts wakatime-cli in a single pass.
+Maintainer:  WakaTime <support@wakatime.com>
+License:     BSD, see LICENSE for more details.
+Website:     https://wakatime.com/
+===========================================================*/
+
+package org.wakatime.netbeans.plugin;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.net.HttpURLConnection;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
+import org.netbeans.api.progress.ProgressHandle;
+import org.netbeans.api.progress.ProgressHandleFactory;
+import org.openide.util.Cancellable;
+
+/**
+ * Entries are extracted from the zip while it downloads, and the SHA-256
+ * of the archive is computed from the same bytes. Downloaded bytes are
+ * also appended to a .part file, so when the connection drops the next
+ * install resumes with a Range request, replaying the .part file into the
+ * extractor before the rest of the stream. Extracted files are written
+ * next to their final location with a .download suffix and only moved
+ * into place once the whole archive has been read and its checksum
+ * matches the one listed in the release's checksums.txt. Nothing is
+ * downloaded when checksums.txt can't be fetched over a verified
+ * connection or doesn't list the archive. A failed or interrupted
+ * install leaves the previous wakatime-cli untouched.
+ */
+public class CliInstaller {
+    private static final String TEMP_SUFFIX = ".download";
+    private static final String PART_SUFFIX = ".part";
+
+    /**
+     * Installs the archive at url into outputDir, returning false if the
+     * checksum is unknown or doesn't match, or the download or extraction
+     * failed.
+     */
+    public static boolean install(final String url, String checksumsUrl, final File outputDir) {
+        final String archiveName = url.substring(url.lastIndexOf('/') + 1);
+        final String expected = expectedChecksum(checksumsUrl, archiveName);
+        if (expected == null) {
+            WakaTime.error("Not installing " + archiveName + " without a verified checksum");
+            return false;
+        }
+
+        if (!outputDir.exists())
+            outputDir.mkdirs();
+        final File part = getPartFile(url, outputDir);
+        final List<File> extracted = new ArrayList<File>();
+        final Progress progress = new Progress("Downloading wakatime-cli...");
+        long start = System.nanoTime();
+        try {
+            boolean ok = HttpRequests.execute(url, new HttpRequests.Handler<Boolean>() {
+                @Override
+                public Boolean handle(HttpURLConnection conn) throws IOException {
+                    long offset = part.length();
+                    if (offset > 0)
+                        conn.setRequestProperty("Range", "bytes=" + offset + "-");
+                    int statusCode = conn.getResponseCode();
+
+                    InputStream source;
+                    if (statusCode == HttpURLConnection.HTTP_PARTIAL && !String.valueOf(conn.getHeaderField("Content-Range")).startsWith("bytes " + offset + "-")) {
+                        HttpRequests.drain(conn.getInputStream());
+                        part.delete();
+                        WakaTime.warn("Unexpected Content-Range " + conn.getHeaderField("Content-Range") + " resuming " + archiveName + ", restarting download next time");
+                        return false;
+                    } else if (statusCode == HttpURLConnection.HTTP_PARTIAL) {
+                        WakaTime.info("Resuming download of " + archiveName + " at " + offset + " bytes");
+                        progress.start(offset, offset + conn.getContentLength());
+                        source = new SequenceInputStream(new FileInputStream(part), new TeeInputStream(conn.getInputStream(), new FileOutputStream(part, true), progress));
+                    } else if (statusCode == 416 && offset > 0) {
+                        // the .part file already holds the whole archive
+                        HttpRequests.drain(conn.getErrorStream());
+                        progress.start(offset, offset);
+                        source = new FileInputStream(part);
+                    } else if (statusCode == HttpURLConnection.HTTP_OK) {
+                        progress.start(0, conn.getContentLength());
+                        source = new TeeInputStream(conn.getInputStream(), new FileOutputStream(part, false), progress);
+                    } else {
+                        HttpRequests.drain(conn.getErrorStream());
+                        WakaTime.warn("Download of " + conn.getURL() + " failed with status " + statusCode);
+                        return false;
+                    }
+
+                    MessageDigest digest = sha256();
+                    InputStream in = new BufferedInputStream(new DigestInputStream(source, digest), HttpRequests.BUFFER_SIZE);
+                    try {
+                        extract(new ZipInputStream(in), outputDir, extracted);
+                        // read the central directory too, so the checksum covers the whole archive
+                        HttpRequests.drain(in);
+                    } finally {
+                        in.close();
+                    }
+                    String actual = Utils.toHex(digest.digest());
+                    part.delete();
+                    if (!expected.equalsIgnoreCase(actual)) {
+                        WakaTime.error("Checksum mismatch for " + archiveName + ": expected " + expected + " but got " + actual);
+                        return false;
+                    }
+                    return true;
+                }
+            });
+            if (ok) {
+                for (File file : extracted) {
+                    commit(file);
+                }
+                WakaTime.debug("Installed " + archiveName + " in " + (System.nanoTime() - start) / 1000000 + "ms");
+                return true;
+            }
+        } catch (ZipException e) {
+            part.delete();
+            WakaTime.error("Unable to install " + archiveName + ", archive is corrupt: " + e.toString());
+        } catch (IOException e) {
+            WakaTime.error("Unable to install " + archiveName + ", " + part.length() + " bytes kept for resuming: " + e.toString());
+        } finally {
+            progress.finish();
+            for (File file : extracted) {
+                if (file.exists())
+                    file.delete();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The .part file is named after the release folder and the archive, so
+     * a partial download is never resumed against a different version.
+     * Leftovers from other versions are removed.
+     */
+    private static File getPartFile(String url, File outputDir) {
+        String[] segments = url.split("/");
+        String archiveName = segments[segments.length - 1];
+        String version = segments.length > 1 ? segments[segments.length - 2] : "";
+        final String suffix = "-" + archiveName + PART_SUFFIX;
+        File part = new File(outputDir, version + suffix);
+        File[] stale = outputDir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(suffix);
+            }
+        });
+        if (stale != null) {
+            for (File file : stale) {
+                if (!file.equals(part))
+                    file.delete();
+            }
+        }
+        return part;
+    }
+
+    /**
+     * Looks up the SHA-256 of an archive in a goreleaser style checksums
+     * file, fetched without the unverified TLS retry. Returns null when the
+     * file can't be fetched or doesn't list the archive.
+     */
+    private static String expectedChecksum(String checksumsUrl, String archiveName) {
+        Response resp;
+        try {
+            resp = HttpRequests.getString(checksumsUrl, null, false);
+        } catch (IOException e) {
+            WakaTime.warn("Unable to fetch " + checksumsUrl + ": " + e.toString());
+            return null;
+        }
+        if (resp == null || resp.statusCode != HttpURLConnection.HTTP_OK) {
+            WakaTime.warn("Unable to fetch " + checksumsUrl + (resp == null ? "" : ", status " + resp.statusCode));
+            return null;
+        }
+        for (String line : resp.body.split("\n")) {
+            String[] parts = line.trim().split("\\s+");
+            if (parts.length == 2 && parts[1].replace("*", "").equals(archiveName) && parts[0].matches("[0-9a-fA-F]{64}"))
+                return parts[0];
+        }
+        WakaTime.warn(archiveName + " not listed in " + checksumsUrl);
+        return null;
+    }
+
+    private static void extract(ZipInputStream zis, File outputDir, List<File> extracted) throws IOException {
+        String root = outputDir.getCanonicalPath() + File.separator;
+        ZipEntry ze;
+        while ((ze = zis.getNextEntry()) != null) {
+            File newFile = new File(outputDir, ze.getName());
+            if (!newFile.getCanonicalPath().startsWith(root))
+                throw new IOException("Zip entry outside of target directory: " + ze.getName());
+            if (ze.isDirectory()) {
+                newFile.mkdirs();
+                continue;
+            }
+            File parent = newFile.getParentFile();
+            if (!parent.exists())
+                parent.mkdirs();
+            File tmp = new File(newFile.getPath() + TEMP_SUFFIX);
+            extracted.add(tmp);
+            FileOutputStream out = new FileOutputStream(tmp);
+            try {
+                HttpRequests.copy(zis, out);
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+            zis.closeEntry();
+        }
+    }
+
+    /**
+     * Moves an extracted file over its final name, atomically where the
+     * file system allows it.
+     */
+    private static void commit(File tmp) throws IOException {
+        String path = tmp.getPath();
+        File target = new File(path.substring(0, path.length() - TEMP_SUFFIX.length()));
+        if (!Dependencies.isWindows())
+            tmp.setExecutable(true);
+        if (target.isDirectory())
+            Dependencies.recursiveDelete(target);
+        try {
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Passes the bytes read from the network through to the .part file as
+     * they are read, so everything received survives a dropped connection.
+     */
+    private static class TeeInputStream extends FilterInputStream {
+        private final OutputStream copy;
+        private final Progress progress;
+
+        TeeInputStream(InputStream in, OutputStream copy, Progress progress) {
+            super(in);
+            this.copy = copy;
+            this.progress = progress;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int read = read(b, 0, 1);
+            return read < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            progress.checkCancelled();
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                copy.write(b, off, read);
+                progress.advance(read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            return read(new byte[(int) Math.min(n, 4096)]);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                copy.close();
+            }
+        }
+    }
+
+    /**
+     * Reports download progress in kilobytes to a NetBeans progress bar.
+     * Cancelling keeps the .part file so the download resumes next time.
+     */
+    private static class Progress implements Cancellable {
+        private final ProgressHandle handle;
+        private volatile boolean cancelled = false;
+        private long done = 0;
+        private int reported = -1;
+        private boolean started = false;
+
+        Progress(String displayName) {
+            handle = ProgressHandleFactory.createHandle(displayName, this);
+        }
+
+        /**
+         * Starts the progress bar, or resets it when the request is sent
+         * again, since a handle can only be started once.
+         */
+        void start(long offset, long total) {
+            done = offset;
+            reported = -1;
+            boolean determinate = total > offset && total / 1024 < Integer.MAX_VALUE;
+            if (!started) {
+                started = true;
+                if (determinate)
+                    handle.start((int) (total / 1024));
+                else
+                    handle.start();
+            }
+            if (determinate) {
+                handle.switchToDeterminate((int) (total / 1024));
+                advance(0);
+            } else {
+                handle.switchToIndeterminate();
+            }
+        }
+
+        void advance(int bytes) {
+            done += bytes;
+            int kilobytes = (int) (done / 1024);
+            if (kilobytes != reported) {
+                reported = kilobytes;
+                handle.progress(kilobytes);
+            }
+        }
+
+        void checkCancelled() throws IOException {
+            if (cancelled)
+                throw new IOException("Download cancelled");
+        }
+
+        void finish() {
+            if (started)
+                handle.finish();
+        }
+
+        @Override
+        public boolean cancel() {
+            cancelled = true;
+            return true;
+        }
+    }
+
+    private static MessageDigest sha256() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+}
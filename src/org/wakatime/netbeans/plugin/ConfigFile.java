@@ -8,19 +8,31 @@ Website:     https://wakatime.com/
 
 package org.wakatime.netbeans.plugin;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.io.UnsupportedEncodingException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class ConfigFile {
     private static final String fileName = ".wakatime.cfg";
     private static final String internalFileName = ".wakatime-internal.cfg";
     private static String cachedConfigFile = null;
     private static String _api_key = "";
+    private static final Cache cache = new Cache();
+    private static final Cache internalCache = new Cache();
+
+    private static class Cache {
+        File file = null;
+        long size = -1;
+        long modified = -1;
+        IniFile ini = null;
+    }
 
     private static String getConfigFilePath(boolean internal) {
         if (ConfigFile.cachedConfigFile == null) {
@@ -29,124 +41,160 @@ public class ConfigFile {
                 if (folder.exists()) {
                     ConfigFile.cachedConfigFile = folder.getAbsolutePath();
                     WakaTime.debug("Using $WAKATIME_HOME for config folder: " + ConfigFile.cachedConfigFile);
-                    return ConfigFile.cachedConfigFile;
                 }
             }
-            ConfigFile.cachedConfigFile = new File(System.getProperty("user.home")).getAbsolutePath();
-            WakaTime.debug("Using $HOME for config folder: " + ConfigFile.cachedConfigFile);
+            if (ConfigFile.cachedConfigFile == null) {
+                ConfigFile.cachedConfigFile = new File(System.getProperty("user.home")).getAbsolutePath();
+                WakaTime.debug("Using $HOME for config folder: " + ConfigFile.cachedConfigFile);
+            }
         }
         return new File(ConfigFile.cachedConfigFile, internal ? internalFileName : fileName).getAbsolutePath();
     }
 
+    /**
+     * Looks up a key from an in-memory index of the config file. The file
+     * is parsed again only after its size or modification time changes.
+     */
     public static String get(String section, String key, boolean internal) {
-        String file = ConfigFile.getConfigFilePath(internal);
-        String val = null;
+        return ConfigFile.load(internal).get(section, key);
+    }
+
+    /**
+     * Returns true when the section exists and has at least one key.
+     */
+    public static boolean hasSection(String section, boolean internal) {
+        return !ConfigFile.load(internal).isEmpty(section);
+    }
+
+    /**
+     * Reads a whole number from the [settings] section, returning
+     * defaultValue when the key is missing, isn't a number or is below
+     * minimum.
+     */
+    static int readSetting(String key, int defaultValue, int minimum) {
+        String value = ConfigFile.get("settings", key, false);
+        if (value == null || value.trim().equals(""))
+            return defaultValue;
         try {
-            BufferedReader br = new BufferedReader(new FileReader(file));
-            String currentSection = "";
+            int parsed = Integer.parseInt(value.trim());
+            if (parsed >= minimum)
+                return parsed;
+            WakaTime.warn(key + " in config must be at least " + minimum + ", using " + defaultValue);
+        } catch (NumberFormatException e) {
+            WakaTime.warn("Invalid " + key + " in config: " + value);
+        }
+        return defaultValue;
+    }
+
+    private static IniFile load(boolean internal) {
+        Cache cache = internal ? ConfigFile.internalCache : ConfigFile.cache;
+        synchronized (cache) {
+            if (cache.file == null)
+                cache.file = new File(ConfigFile.getConfigFilePath(internal));
+            long size = cache.file.length();
+            long modified = cache.file.lastModified();
+            if (cache.ini != null && size == cache.size && modified == cache.modified)
+                return cache.ini;
             try {
-                String line = br.readLine();
-                while (line != null) {
-                    if (line.trim().startsWith("[") && line.trim().endsWith("]")) {
-                        currentSection = line.trim().substring(1, line.trim().length() - 1).toLowerCase();
-                    } else {
-                        if (section.toLowerCase().equals(currentSection)) {
-                            String[] parts = line.split("=");
-                            if (parts.length == 2 && parts[0].trim().equals(key)) {
-                                val = parts[1].trim();
-                                br.close();
-                                return removeNulls(val);
-                            }
-                        }
-                    }
-                    line = br.readLine();
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-            } finally {
-                try {
-                    br.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
+                cache.ini = IniFile.read(cache.file);
+            } catch (IOException e) {
+                WakaTime.warn("Unable to read config file: " + e.toString());
+                cache.ini = new IniFile();
             }
-        } catch (FileNotFoundException e1) { /* ignored */ }
-        return removeNulls(val);
+            cache.size = size;
+            cache.modified = modified;
+            return cache.ini;
+        }
+    }
+
+    private static void invalidate(boolean internal) {
+        Cache cache = internal ? ConfigFile.internalCache : ConfigFile.cache;
+        synchronized (cache) {
+            cache.ini = null;
+        }
     }
 
     public static void set(String section, String key, boolean internal, String val) {
-        key = removeNulls(key);
-        val = removeNulls(val);
+        Map<String, String> values = new LinkedHashMap<String, String>();
+        values.put(key, val);
+        set(section, values, internal);
+    }
 
-        String file = ConfigFile.getConfigFilePath(internal);
-        StringBuilder contents = new StringBuilder();
-        try {
-            BufferedReader br = new BufferedReader(new FileReader(file));
+    /**
+     * Sets several keys in one section with a single rewrite of the file.
+     * The new contents go to a temp file which is synced and then renamed
+     * over the config file, while holding an advisory lock so IDEs sharing
+     * a home folder don't overwrite each other's changes.
+     */
+    public static void set(String section, Map<String, String> values, boolean internal) {
+        Map<String, String> pending = new LinkedHashMap<String, String>();
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            pending.put(removeNulls(entry.getKey()), removeNulls(entry.getValue()));
+        }
+        String sectionName = section.toLowerCase();
+
+        synchronized (ConfigFile.class) {
+            Utils.Lock lock = Utils.lock(new File(Dependencies.getResourcesLocation(), "netbeans-" + (internal ? "internal-" : "") + "config.lock"));
             try {
-                String currentSection = "";
-                String line = br.readLine();
-                Boolean found = false;
-                while (line != null) {
-                    line = removeNulls(line);
-                    if (line.trim().startsWith("[") && line.trim().endsWith("]")) {
-                        if (section.toLowerCase().equals(currentSection) && !found) {
-                            contents.append(key + " = " + val + "\n");
-                            found = true;
-                        }
-                        currentSection = line.trim().substring(1, line.trim().length() - 1).toLowerCase();
-                        contents.append(line + "\n");
-                    } else {
-                        if (section.toLowerCase().equals(currentSection)) {
-                            String[] parts = line.split("=");
-                            String currentKey = parts[0].trim();
-                            if (currentKey.equals(key)) {
-                                if (!found) {
-                                    contents.append(key + " = " + val + "\n");
-                                    found = true;
-                                }
-                            } else {
-                                contents.append(line + "\n");
-                            }
-                        } else {
-                            contents.append(line + "\n");
-                        }
-                    }
-                    line = br.readLine();
+                File file = new File(ConfigFile.getConfigFilePath(internal));
+                if (file.exists())
+                    file = file.toPath().toRealPath().toFile();
+                IniFile ini = IniFile.read(file);
+                for (Map.Entry<String, String> entry : pending.entrySet()) {
+                    ini.set(sectionName, entry.getKey(), entry.getValue());
                 }
-                if (!found) {
-                    if (!section.toLowerCase().equals(currentSection)) {
-                        contents.append("[" + section.toLowerCase() + "]\n");
-                    }
-                    contents.append(key + " = " + val + "\n");
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
+                ConfigFile.replace(file, ini.toString());
+            } catch (IOException e) {
+                WakaTime.error("Unable to write config file: " + e.toString());
             } finally {
-                try {
-                    br.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
+                lock.release();
+                ConfigFile.invalidate(internal);
             }
-        } catch (FileNotFoundException e1) {
-
-            // cannot read config file, so create it
-            contents = new StringBuilder();
-            contents.append("[" + section.toLowerCase() + "]\n");
-            contents.append(key + " = " + val + "\n");
         }
+    }
 
-        PrintWriter writer = null;
+    static void replace(File file, String contents) throws IOException {
+        File tmp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
         try {
-            writer = new PrintWriter(file, "UTF-8");
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-        } catch (UnsupportedEncodingException e) {
-            e.printStackTrace();
+            if (file.exists())
+                copyPermissions(file, tmp);
+            FileOutputStream out = new FileOutputStream(tmp);
+            try {
+                out.write(contents.getBytes("UTF-8"));
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+            try {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            if (tmp.exists())
+                tmp.delete();
         }
-        if (writer != null) {
-            writer.print(contents.toString());
-            writer.close();
+    }
+
+    /**
+     * Gives the temp file the mode and owner of the file it replaces, before
+     * anything is written to it, so a private config stays private. Owner
+     * changes usually need privileges and are skipped when refused.
+     */
+    private static void copyPermissions(File from, File to) throws IOException {
+        PosixFileAttributeView source = Files.getFileAttributeView(from.toPath(), PosixFileAttributeView.class);
+        PosixFileAttributeView target = Files.getFileAttributeView(to.toPath(), PosixFileAttributeView.class);
+        if (source == null || target == null)
+            return;
+        PosixFileAttributes attributes = source.readAttributes();
+        target.setPermissions(attributes.permissions());
+        try {
+            if (!attributes.owner().equals(target.getOwner()))
+                target.setOwner(attributes.owner());
+            if (!attributes.group().equals(target.readAttributes().group()))
+                target.setGroup(attributes.group());
+        } catch (IOException e) {
+            WakaTime.debug("Unable to keep owner of " + from + ": " + e.toString());
         }
     }
 
@@ -0,0 +1,26 @@
+/* ==========================================================
+File:        CursorPosition.java
+Description: Line, column and line count of a document at one edit.
+Maintainer:  WakaTime <support@wakatime.com>
+License:     BSD, see LICENSE for more details.
+Website:     https://wakatime.com/
+===========================================================*/
+
+package org.wakatime.netbeans.plugin;
+
+/**
+ * Immutable snapshot sent as --lineno, --cursorpos and --lines-in-file.
+ * Line numbers and cursor positions are 1-based; the cursor position is
+ * the column within the line.
+ */
+public class CursorPosition {
+    public final int lineno;
+    public final int cursorpos;
+    public final int lines;
+
+    public CursorPosition(int lineno, int cursorpos, int lines) {
+        this.lineno = lineno;
+        this.cursorpos = cursorpos;
+        this.lines = lines;
+    }
+}
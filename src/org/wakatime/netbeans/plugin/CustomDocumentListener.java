@@ -12,10 +12,8 @@ import javax.swing.SwingUtilities;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 import javax.swing.text.Document;
-import org.netbeans.api.project.FileOwnerQuery;
+import javax.swing.text.Element;
 import org.netbeans.api.project.Project;
-import org.netbeans.modules.parsing.api.Source;
-import org.openide.filesystems.FileObject;
 
 /**
  *
@@ -24,17 +22,28 @@ import org.openide.filesystems.FileObject;
 public class CustomDocumentListener implements DocumentListener {
     private final Document document;
 
+    // maintained from document events while the document is locked for writing,
+    // and read by newHeartbeat, both under this listener's lock
+    private Element line = null;
+    private int lineIndex = -1;
+    private int column = -1;
+    private int lines = -1;
+    private int lineAdditions = 0;
+    private int lineDeletions = 0;
+
     public CustomDocumentListener(Document d) {
         this.document = d;
     }
 
     @Override
     public void insertUpdate(DocumentEvent e) {
+        this.track(e, e.getOffset() + e.getLength());
         this.handleTyping();
     }
 
     @Override
     public void removeUpdate(DocumentEvent e) {
+        this.track(e, e.getOffset());
         this.handleTyping();
     }
 
@@ -43,56 +52,84 @@ public class CustomDocumentListener implements DocumentListener {
         this.handleTyping();
     }
 
-    public void update() {
-        if (WakaTime.documentListener != null)
-            WakaTime.documentListener.remove();
-        WakaTime.documentListener = this;
-    }
-
     public void remove() {
         this.document.removeDocumentListener(this);
     }
 
+    /**
+     * Creates a heartbeat for this document with its last known cursor
+     * position and the lines added and deleted since the previous one.
+     */
+    public Heartbeat newHeartbeat(String file, Project project, boolean isWrite) {
+        Heartbeat heartbeat = new Heartbeat(file, project, isWrite, System.currentTimeMillis());
+        synchronized (this) {
+            if (this.column > 0)
+                heartbeat.position = new CursorPosition(this.lineIndex + 1, this.column, this.lines);
+            heartbeat.lineAdditions = this.lineAdditions;
+            heartbeat.lineDeletions = this.lineDeletions;
+            this.lineAdditions = 0;
+            this.lineDeletions = 0;
+        }
+        return heartbeat;
+    }
+
     public void handleTyping() {
-        final FileObject file = this.getFile();
-        if (file != null) {
-            final Project currentProject = this.getProject();
-            final long currentTime = System.currentTimeMillis() / 1000;
+        final DocumentCache.Entry entry = this.typed(System.currentTimeMillis() / 1000);
+        if (entry != null) {
             SwingUtilities.invokeLater(new Runnable() {
                 @Override
                 public void run() {
-                    final String currentFile = file.getPath();
-                    if ((!currentFile.equals(WakaTime.lastFile) || WakaTime.enoughTimePassed(currentTime))) {
-                        WakaTime.sendHeartbeat(currentFile, currentProject, false);
-                        WakaTime.lastFile = currentFile;
-                        WakaTime.lastTime = currentTime;
-                    }
+                    WakaTime.sendHeartbeat(newHeartbeat(entry.path, entry.project, false));
                 }
             });
         }
     }
-    private FileObject getFile() {
-        if (this.document == null)
-            return null;
-        Source source = Source.create(this.document);
-        if (source == null)
-            return null;
-        FileObject fileObject = source.getFileObject();
-        if (fileObject == null)
-            return null;
-        return fileObject;
+
+    /**
+     * Records a keystroke at currentTime, returning the document's entry
+     * when it earns a heartbeat or null when it is throttled. Runs on the
+     * thread firing the document event, so throttled keystrokes never
+     * post to the event thread.
+     */
+    DocumentCache.Entry typed(long currentTime) {
+        DocumentCache.Entry entry = DocumentCache.get(this.document);
+        if (entry != null && HeartbeatStates.shouldSend(entry.path, entry.project, currentTime, false))
+            return entry;
+        return null;
     }
 
-    private Project getProject() {
-        if (this.document == null)
-            return null;
-        Source source = Source.create(document);
-        if (source == null)
-            return null;
-        FileObject fileObject = source.getFileObject();
-        if (fileObject == null)
-            return null;
-        return FileOwnerQuery.getOwner(fileObject);
+    /**
+     * Updates the line count, the lines added or deleted since the last
+     * heartbeat and the cursor line from the event's change to the line
+     * elements. An edit that adds or removes lines reports the
+     * index of the lines it replaced, and an edit inside the cached line
+     * keeps it, so only a jump to another line without a line change
+     * searches the element tree. Only primitives are updated here; the
+     * CursorPosition is built when a heartbeat is sent.
+     */
+    private void track(DocumentEvent e, int offset) {
+        Element root = this.document.getDefaultRootElement();
+        DocumentEvent.ElementChange change = e.getChange(root);
+        int delta = change == null ? 0 : change.getChildrenAdded().length - change.getChildrenRemoved().length;
+        synchronized (this) {
+            if (this.lines < 0)
+                this.lines = root.getElementCount();
+            else
+                this.lines += delta;
+            if (delta > 0)
+                this.lineAdditions += delta;
+            else if (delta < 0)
+                this.lineDeletions -= delta;
+
+            if (change != null && change.getChildrenAdded().length > 0) {
+                this.lineIndex = change.getIndex() + change.getChildrenAdded().length - 1;
+                this.line = root.getElement(this.lineIndex);
+            } else if (change != null || this.line == null || offset < this.line.getStartOffset() || offset >= this.line.getEndOffset()) {
+                this.lineIndex = root.getElementIndex(offset);
+                this.line = root.getElement(this.lineIndex);
+            }
+            this.column = this.line == null ? -1 : offset - this.line.getStartOffset() + 1;
+        }
     }
 
 }
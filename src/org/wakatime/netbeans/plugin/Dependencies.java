@@ -7,53 +7,28 @@ Website:     https://wakatime.com/
 ===========================================================*/
 
 package org.wakatime.netbeans.plugin;
-import javax.net.ssl.HttpsURLConnection;
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.TrustManager;
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.Authenticator;
-import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.net.URL;
-import java.net.UnknownHostException;
 import java.net.PasswordAuthentication;
-import java.nio.channels.Channels;
-import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
-import java.security.KeyManagementException;
-import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 
-class Response {
-    public int statusCode;
-    public String body;
-    public String lastModified;
-
-    public Response(int statusCode, String body, String lastModified) {
-        this.statusCode = statusCode;
-        this.body = body;
-        this.lastModified = lastModified;
-    }
-}
-
 public class Dependencies {
 	private static String resourcesLocation = null;
     private static String cliVersion = null;
     private static Boolean alpha = null;
+    private static final long LATEST_VERSION_TTL = 4 * 60 * 60; // seconds
 
     public static String getResourcesLocation() {
         if (Dependencies.resourcesLocation != null) return Dependencies.resourcesLocation;
@@ -89,62 +64,77 @@ public class Dependencies {
         if (!Dependencies.isCLIInstalled()) {
             return false;
         }
+        String localVersion = localCliVersion();
+        if (localVersion == null)
+            return true;
+        String cliVersion = latestCliVersion();
+        WakaTime.debug("Latest wakatime-cli version: " + cliVersion);
+        return !localVersion.equals(cliVersion);
+    }
+
+    /**
+     * Returns the version reported by wakatime-cli --version, or null if it
+     * failed. The answer is cached in the internal config together with the
+     * binary's path, size and modification time, so the process only runs
+     * again after the binary changed.
+     */
+    private static String localCliVersion() {
+        File cli = new File(Dependencies.getCLILocation());
+        String fingerprint = cli.getAbsolutePath() + ":" + cli.length() + ":" + cli.lastModified();
+        if (fingerprint.equals(ConfigFile.get("internal", "cli_local_fingerprint", true))) {
+            String cached = ConfigFile.get("internal", "cli_local_version", true);
+            if (cached != null && !cached.trim().equals("")) {
+                WakaTime.debug("Using cached wakatime-cli local version: " + cached.trim());
+                return cached.trim();
+            }
+        }
+
         ArrayList<String> cmds = new ArrayList<String>();
         cmds.add(Dependencies.getCLILocation());
         cmds.add("--version");
         try {
-            Process p = Runtime.getRuntime().exec(cmds.toArray(new String[cmds.size()]));
+            ProcessBuilder builder = new ProcessBuilder(cmds);
+            builder.redirectErrorStream(true);
+            Process p = builder.start();
             BufferedReader stdInput = new BufferedReader(new
                     InputStreamReader(p.getInputStream()));
-            BufferedReader stdError = new BufferedReader(new
-                    InputStreamReader(p.getErrorStream()));
-            p.waitFor();
             String output = "";
             String s;
             while ((s = stdInput.readLine()) != null) {
                 output += s;
             }
-            while ((s = stdError.readLine()) != null) {
-                output += s;
-            }
+            stdInput.close();
+            p.waitFor();
             WakaTime.debug("wakatime-cli local version output: \"" + output + "\"");
             WakaTime.debug("wakatime-cli local version exit code: " + p.exitValue());
 
             if (p.exitValue() == 0) {
-                String cliVersion = latestCliVersion();
-                WakaTime.debug("Latest wakatime-cli version: " + cliVersion);
-                if (output.trim().equals(cliVersion)) return false;
+                Map<String, String> values = new LinkedHashMap<String, String>();
+                values.put("cli_local_fingerprint", fingerprint);
+                values.put("cli_local_version", output.trim());
+                ConfigFile.set("internal", values, true);
+                return output.trim();
             }
         } catch (Exception e) {
             WakaTime.warn(e.getMessage());
         }
-        return true;
+        return null;
     }
 
+    /**
+     * Returns the latest wakatime-cli release. The answer comes from the
+     * shared HttpCache and GitHub is asked again at most once every
+     * LATEST_VERSION_TTL across all IDEs using the same resources folder.
+     */
     public static String latestCliVersion() {
         if (cliVersion != null) return cliVersion;
-        String url = Dependencies.githubReleasesApiUrl();
-        try {
-            Response resp = getUrlAsString(url, ConfigFile.get("internal", "cli_version_last_modified", true));
-            if (resp == null) {
-                cliVersion = ConfigFile.get("internal", "cli_version", true).trim();
-                WakaTime.debug("Using cached wakatime-cli version from config: " + cliVersion);
-                return cliVersion;
-            }
-            Pattern p = Pattern.compile(".*\"tag_name\":\\s*\"([^\"]+)\",.*");
-            Matcher m = p.matcher(resp.body);
-            if (m.find()) {
-                cliVersion = m.group(1);
-                if (resp.lastModified != null) {
-                    ConfigFile.set("internal", "cli_version_last_modified", true, resp.lastModified);
-                    ConfigFile.set("internal", "cli_version", true, cliVersion);
-                }
-                return cliVersion;
+        String version = HttpCache.get(Dependencies.githubReleasesApiUrl(), LATEST_VERSION_TTL, new HttpCache.Extractor() {
+            @Override
+            public String extract(Reader body) throws IOException {
+                return JsonScanner.findString(body, "tag_name");
             }
-        } catch (Exception e) {
-            WakaTime.warn(e.getMessage());
-        }
-        cliVersion = "Unknown";
+        });
+        cliVersion = version == null ? "Unknown" : version;
         return cliVersion;
     }
 
@@ -161,32 +151,32 @@ public class Dependencies {
         return combinePaths(getResourcesLocation(), "wakatime-cli-" + osname() + "-" + architecture() + ext);
     }
 
-    public static void installCLI() {
+    /**
+     * Installs the latest wakatime-cli while holding a lock on the resources
+     * folder, so IDEs starting at the same time download it only once. An
+     * IDE that had to wait skips the download when the one holding the lock
+     * already installed the latest version.
+     */
+    public static synchronized void installCLI() {
         File resourceDir = new File(getResourcesLocation());
         if (!resourceDir.exists()) resourceDir.mkdirs();
 
         checkMissingPlatformSupport();
 
-        String url = getCLIDownloadUrl();
-        String zipFile = combinePaths(getResourcesLocation(), "wakatime-cli.zip");
-
-        if (downloadFile(url, zipFile)) {
-
-            // Delete old wakatime-cli if it exists
-            File file = new File(getCLILocation());
-            recursiveDelete(file);
+        Utils.Lock lock = Utils.lock(new File(resourceDir, "wakatime-cli.lock"));
+        try {
+            if (lock.waited() && isCLIInstalled() && !isCLIOld()) {
+                WakaTime.info("wakatime-cli was installed by another IDE");
+                CliCommandTemplates.invalidate();
+                return;
+            }
 
-            File outputDir = new File(getResourcesLocation());
-            try {
-                unzip(zipFile, outputDir);
-                if (!isWindows()) {
-	              makeExecutable(getCLILocation());
-	            }
-                File oldZipFile = new File(zipFile);
-                oldZipFile.delete();
-            } catch (IOException e) {
-                WakaTime.error(e.getMessage());
+            if (CliInstaller.install(getCLIDownloadUrl(), getCLIChecksumsUrl(), resourceDir)) {
+                WakaTime.debug("Installed wakatime-cli " + latestCliVersion() + " to " + getCLILocation());
+                CliCommandTemplates.invalidate();
             }
+        } finally {
+            lock.release();
         }
     }
 
@@ -220,7 +210,8 @@ public class Dependencies {
     private static void reportMissingPlatformSupport(String osname, String architecture) {
         String url = "https://api.wakatime.com/api/v1/cli-missing?osname=" + osname + "&architecture=" + architecture + "&plugin=" + WakaTime.IDE_NAME;
         try {
-            getUrlAsString(url, null);
+            // carries no credentials, so a TLS intercepting proxy may answer it
+            HttpRequests.getString(url, null, true);
         } catch (Exception e) {
             WakaTime.warn(e.getMessage());
         }
@@ -230,130 +221,8 @@ public class Dependencies {
         return "https://github.com/wakatime/wakatime-cli/releases/download/" + latestCliVersion() + "/wakatime-cli-" + osname() + "-" + architecture() + ".zip";
     }
 
-    public static boolean downloadFile(String url, String saveAs) {
-        File outFile = new File(saveAs);
-
-        // create output directory if does not exist
-        File outDir = outFile.getParentFile();
-        if (!outDir.exists())
-            outDir.mkdirs();
-
-        URL downloadUrl = null;
-        try {
-            downloadUrl = new URL(url);
-        } catch (MalformedURLException e) {
-            WakaTime.error(e.getMessage());
-        }
-
-        WakaTime.debug("DownloadFile(" + downloadUrl.toString() + ")");
-
-        ReadableByteChannel rbc = null;
-        FileOutputStream fos = null;
-        try {
-            rbc = Channels.newChannel(downloadUrl.openStream());
-            fos = new FileOutputStream(saveAs);
-            fos.getChannel().transferFrom(rbc, 0, Long.MAX_VALUE);
-            fos.close();
-            return true;
-        } catch (RuntimeException e) {
-            WakaTime.warn(e.getMessage());
-            try {
-                // try downloading without verifying SSL cert (https://github.com/wakatime/jetbrains-wakatime/issues/46)
-                SSLContext SSL_CONTEXT = SSLContext.getInstance("SSL");
-                SSL_CONTEXT.init(null, new TrustManager[] { new LocalSSLTrustManager() }, null);
-                HttpsURLConnection.setDefaultSSLSocketFactory(SSL_CONTEXT.getSocketFactory());
-                HttpsURLConnection conn = (HttpsURLConnection)downloadUrl.openConnection();
-                conn.setRequestProperty("User-Agent", "github.com/wakatime/netbeans-wakatime");
-                InputStream inputStream = conn.getInputStream();
-                fos = new FileOutputStream(saveAs);
-                int bytesRead = -1;
-                byte[] buffer = new byte[4096];
-                while ((bytesRead = inputStream.read(buffer)) != -1) {
-                    fos.write(buffer, 0, bytesRead);
-                }
-                inputStream.close();
-                fos.close();
-                return true;
-            } catch (NoSuchAlgorithmException e1) {
-                WakaTime.warn(e1.getMessage());
-            } catch (KeyManagementException e1) {
-                WakaTime.warn(e1.getMessage());
-            } catch (IOException e1) {
-                WakaTime.warn(e1.getMessage());
-            }
-        } catch (IOException e) {
-            WakaTime.warn(e.getMessage());
-        }
-
-        return false;
-    }
-
-    public static Response getUrlAsString(String url, String lastModified) {
-        StringBuilder text = new StringBuilder();
-
-        URL downloadUrl = null;
-        try {
-            downloadUrl = new URL(url);
-        } catch (MalformedURLException e) {
-            WakaTime.error(e.getMessage());
-        }
-
-        WakaTime.debug("getUrlAsString(" + downloadUrl.toString() + ")");
-
-        String responseLastModified = null;
-        int statusCode = -1;
-        try {
-            HttpsURLConnection conn = (HttpsURLConnection) downloadUrl.openConnection();
-            conn.setRequestProperty("User-Agent", "github.com/wakatime/netbeans-wakatime");
-            if (lastModified != null && !lastModified.trim().equals("")) {
-                conn.setRequestProperty("If-Modified-Since", lastModified.trim());
-            }
-            statusCode = conn.getResponseCode();
-            if (statusCode == 304) return null;
-            InputStream inputStream = downloadUrl.openStream();
-            byte[] buffer = new byte[4096];
-            while (inputStream.read(buffer) != -1) {
-                text.append(new String(buffer, "UTF-8"));
-            }
-            inputStream.close();
-            if (conn.getResponseCode() == 200) responseLastModified = conn.getHeaderField("Last-Modified");
-        } catch (RuntimeException e) {
-            WakaTime.warn(e.getMessage());
-            try {
-                // try downloading without verifying SSL cert (https://github.com/wakatime/jetbrains-wakatime/issues/46)
-                SSLContext SSL_CONTEXT = SSLContext.getInstance("SSL");
-                SSL_CONTEXT.init(null, new TrustManager[]{new LocalSSLTrustManager()}, null);
-                HttpsURLConnection.setDefaultSSLSocketFactory(SSL_CONTEXT.getSocketFactory());
-                HttpsURLConnection conn = (HttpsURLConnection) downloadUrl.openConnection();
-                conn.setRequestProperty("User-Agent", "github.com/wakatime/netbeans-wakatime");
-                if (lastModified != null && !lastModified.trim().equals("")) {
-                    conn.setRequestProperty("If-Modified-Since", lastModified.trim());
-                }
-                statusCode = conn.getResponseCode();
-                if (statusCode == 304) return null;
-                InputStream inputStream = conn.getInputStream();
-                byte[] buffer = new byte[4096];
-                while (inputStream.read(buffer) != -1) {
-                    text.append(new String(buffer, "UTF-8"));
-                }
-                inputStream.close();
-                if (conn.getResponseCode() == 200) responseLastModified = conn.getHeaderField("Last-Modified");
-            } catch (NoSuchAlgorithmException e1) {
-                WakaTime.warn(e1.getMessage());
-            } catch (KeyManagementException e1) {
-                WakaTime.warn(e1.getMessage());
-            } catch (UnknownHostException e1) {
-                WakaTime.warn(e1.getMessage());
-            } catch (IOException e1) {
-                WakaTime.warn(e1.getMessage());
-            }
-        } catch (UnknownHostException e) {
-            WakaTime.warn(e.getMessage());
-        } catch (Exception e) {
-            WakaTime.warn(e.getMessage());
-        }
-
-        return new Response(statusCode, text.toString(), responseLastModified);
+    private static String getCLIChecksumsUrl() {
+        return "https://github.com/wakatime/wakatime-cli/releases/download/" + latestCliVersion() + "/checksums.txt";
     }
 
     /**
@@ -387,37 +256,7 @@ public class Dependencies {
         }
     }
 
-    private static void unzip(String zipFile, File outputDir) throws IOException {
-        if(!outputDir.exists())
-            outputDir.mkdirs();
-
-        byte[] buffer = new byte[1024];
-        ZipInputStream zis = new ZipInputStream(new FileInputStream(zipFile));
-        ZipEntry ze = zis.getNextEntry();
-
-        while (ze != null) {
-            String fileName = ze.getName();
-            File newFile = new File(outputDir, fileName);
-
-            if (ze.isDirectory()) {
-                newFile.mkdirs();
-            } else {
-                FileOutputStream fos = new FileOutputStream(newFile.getAbsolutePath());
-                int len;
-                while ((len = zis.read(buffer)) > 0) {
-                    fos.write(buffer, 0, len);
-                }
-                fos.close();
-            }
-
-            ze = zis.getNextEntry();
-        }
-
-        zis.closeEntry();
-        zis.close();
-    }
-
-    private static void recursiveDelete(File path) {
+    static void recursiveDelete(File path) {
         if(path.exists()) {
             if (isDirectory(path)) {
                 File[] files = path.listFiles();
@@ -487,11 +326,6 @@ public class Dependencies {
         return "https://api.github.com/repos/wakatime/wakatime-cli/releases/latest";
     }
 
-    private static void makeExecutable(String filePath) throws IOException {
-        File file = new File(filePath);
-        file.setExecutable(true);
-    }
-
     private static boolean isSymLink(File filepath) {
         try {
             return Files.isSymbolicLink(filepath.toPath());
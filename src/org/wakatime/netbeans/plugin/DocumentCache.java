@@ -0,0 +1,138 @@
+/* ==========================================================
+File:        DocumentCache.java
+Description: Caches the file and project behind each open document.
+Maintainer:  WakaTime <support@wakatime.com>
+License:     BSD, see LICENSE for more details.
+Website:     https://wakatime.com/
+===========================================================*/
+
+package org.wakatime.netbeans.plugin;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+import javax.swing.text.Document;
+import org.netbeans.api.project.FileOwnerQuery;
+import org.netbeans.api.project.Project;
+import org.netbeans.modules.parsing.api.Source;
+import org.openide.filesystems.FileChangeAdapter;
+import org.openide.filesystems.FileChangeListener;
+import org.openide.filesystems.FileEvent;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileRenameEvent;
+
+/**
+ * Remembers which file and project each document belongs to, so typing
+ * does not go through the parsing and project APIs on every keystroke.
+ * Documents are held weakly. Entries are dropped when their file is
+ * renamed, moved or deleted, and all entries are dropped when projects
+ * are opened or closed.
+ *
+ * Owners come from the ProjectIndex. When it has none, FileOwnerQuery is
+ * asked once per document, and the answer is cached like any other.
+ */
+public class DocumentCache {
+    private static final Entry NONE = new Entry(null, null, null);
+    private static final Map<Document, Entry> entries = new WeakHashMap<Document, Entry>();
+    private static final Map<FileObject, Boolean> watched = new WeakHashMap<FileObject, Boolean>();
+    private static boolean installed = false;
+
+    public static class Entry {
+        public final FileObject file;
+        public final String path;
+        public final Project project;
+
+        private Entry(FileObject file, String path, Project project) {
+            this.file = file;
+            this.path = path;
+            this.project = project;
+        }
+    }
+
+    private static final FileChangeListener fileListener = new FileChangeAdapter() {
+        @Override
+        public void fileRenamed(FileRenameEvent fe) {
+            invalidate(fe.getFile());
+        }
+
+        @Override
+        public void fileDeleted(FileEvent fe) {
+            invalidate(fe.getFile());
+        }
+    };
+
+    /**
+     * Starts indexing open projects. The index clears this cache whenever
+     * projects are opened or closed.
+     */
+    public static synchronized void install() {
+        if (installed)
+            return;
+        ProjectIndex.install();
+        installed = true;
+    }
+
+    /**
+     * Returns the cached file and project for a document, or null when the
+     * document is not backed by a file.
+     */
+    public static Entry get(Document document) {
+        if (document == null)
+            return null;
+        synchronized (entries) {
+            Entry entry = entries.get(document);
+            if (entry != null)
+                return entry == NONE ? null : entry;
+        }
+        Entry entry = resolve(document);
+        synchronized (entries) {
+            entries.put(document, entry == null ? NONE : entry);
+            if (entry != null && !watched.containsKey(entry.file)) {
+                entry.file.addFileChangeListener(fileListener);
+                watched.put(entry.file, Boolean.TRUE);
+            }
+        }
+        return entry;
+    }
+
+    public static void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public static int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private static void invalidate(FileObject file) {
+        synchronized (entries) {
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                if (entry != NONE && entry.file.equals(file))
+                    it.remove();
+            }
+            if (watched.remove(file) != null)
+                file.removeFileChangeListener(fileListener);
+        }
+    }
+
+    private static Entry resolve(Document document) {
+        Source source = Source.create(document);
+        if (source == null)
+            return null;
+        FileObject fileObject = source.getFileObject();
+        if (fileObject == null)
+            return null;
+        String path = fileObject.getPath().intern();
+        Project project = ProjectIndex.getOwner(path);
+        if (project == null) {
+            // files outside the open projects' folders, such as external source roots
+            project = FileOwnerQuery.getOwner(fileObject);
+        }
+        return new Entry(fileObject, path, project);
+    }
+}
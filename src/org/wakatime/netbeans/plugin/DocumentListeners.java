@@ -0,0 +1,89 @@
+/* ==========================================================
+File:        DocumentListeners.java
+Description: Keeps at most one document listener per open document.
+Maintainer:  WakaTime <support@wakatime.com>
+License:     BSD, see LICENSE for more details.
+Website:     https://wakatime.com/
+===========================================================*/
+
+package org.wakatime.netbeans.plugin;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import javax.swing.text.Document;
+import javax.swing.text.JTextComponent;
+import org.netbeans.api.editor.EditorRegistry;
+
+/**
+ * Registry of the listeners attached to editor documents.
+ *
+ * Documents are weak keys and listeners weak values. The document itself
+ * holds its listener, so a closed document and its listener can be
+ * collected together even if the editor never reported the removal.
+ */
+public class DocumentListeners {
+    private static final Map<Document, WeakReference<CustomDocumentListener>> listeners = new WeakHashMap<Document, WeakReference<CustomDocumentListener>>();
+
+    /**
+     * Attaches a listener to the document unless it already has one.
+     */
+    public static synchronized void register(Document document) {
+        if (document == null)
+            return;
+        WeakReference<CustomDocumentListener> ref = listeners.get(document);
+        if (ref != null && ref.get() != null)
+            return;
+        CustomDocumentListener listener = new CustomDocumentListener(document);
+        document.addDocumentListener(listener);
+        listeners.put(document, new WeakReference<CustomDocumentListener>(listener));
+    }
+
+    /**
+     * Returns the listener attached to the document, or null if it has none.
+     */
+    public static synchronized CustomDocumentListener get(Document document) {
+        if (document == null)
+            return null;
+        WeakReference<CustomDocumentListener> ref = listeners.get(document);
+        return ref == null ? null : ref.get();
+    }
+
+    public static synchronized void unregister(Document document) {
+        if (document == null)
+            return;
+        WeakReference<CustomDocumentListener> ref = listeners.remove(document);
+        if (ref != null) {
+            CustomDocumentListener listener = ref.get();
+            if (listener != null)
+                listener.remove();
+        }
+    }
+
+    /**
+     * Detaches the listener of a closed editor's document, unless another
+     * open editor still shows the same document.
+     */
+    public static void componentRemoved(JTextComponent component) {
+        if (component == null)
+            return;
+        Document document = component.getDocument();
+        for (JTextComponent open : EditorRegistry.componentList()) {
+            if (open != component && open.getDocument() == document)
+                return;
+        }
+        unregister(document);
+    }
+
+    /**
+     * Number of documents that currently have a live listener attached.
+     */
+    public static synchronized int getListenerCount() {
+        int count = 0;
+        for (WeakReference<CustomDocumentListener> ref : listeners.values()) {
+            if (ref.get() != null)
+                count++;
+        }
+        return count;
+    }
+}
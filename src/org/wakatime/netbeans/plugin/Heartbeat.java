@@ -0,0 +1,132 @@
+/* ==========================================================
+File:        Heartbeat.java
+Description: A single unit of coding activity waiting to be sent.
+Maintainer:  WakaTime <support@wakatime.com>
+License:     BSD, see LICENSE for more details.
+Website:     https://wakatime.com/
+===========================================================*/
+
+package org.wakatime.netbeans.plugin;
+
+import java.util.List;
+import java.util.Locale;
+import org.netbeans.api.project.Project;
+
+public class Heartbeat {
+    public final String entity;
+    public final Project project;
+    public boolean isWrite;
+    public long timestamp; // milliseconds since epoch
+    public final long created; // System.nanoTime() when produced, 0 when restored
+    public CursorPosition position = null;
+    public int lineAdditions = 0;
+    public int lineDeletions = 0;
+    private String projectName;
+
+    public Heartbeat(String entity, Project project, boolean isWrite, long timestamp) {
+        this(entity, project, null, isWrite, timestamp, System.nanoTime());
+    }
+
+    /**
+     * Restores a heartbeat whose project is only known by name, such as one
+     * read back from the journal.
+     */
+    public Heartbeat(String entity, String projectName, boolean isWrite, long timestamp) {
+        this(entity, null, projectName, isWrite, timestamp, 0);
+    }
+
+    private Heartbeat(String entity, Project project, String projectName, boolean isWrite, long timestamp, long created) {
+        this.entity = entity;
+        this.project = project;
+        this.projectName = projectName;
+        this.isWrite = isWrite;
+        this.timestamp = timestamp;
+        this.created = created;
+    }
+
+    public String getProjectName() {
+        if (this.projectName == null && this.project != null)
+            this.projectName = CliCommandTemplates.projectName(this.project);
+        return this.projectName;
+    }
+
+    /**
+     * Folds a newer heartbeat for the same entity into this one.
+     */
+    public void merge(Heartbeat newer) {
+        this.isWrite = this.isWrite || newer.isWrite;
+        this.lineAdditions += newer.lineAdditions;
+        this.lineDeletions += newer.lineDeletions;
+        if (newer.timestamp >= this.timestamp && newer.position != null)
+            this.position = newer.position;
+        if (newer.timestamp > this.timestamp)
+            this.timestamp = newer.timestamp;
+    }
+
+    /**
+     * Formats the timestamp the way wakatime-cli expects for --time.
+     */
+    public String time() {
+        return String.format(Locale.US, "%d.%03d", this.timestamp / 1000, this.timestamp % 1000);
+    }
+
+    /**
+     * Serializes heartbeats for wakatime-cli's --extra-heartbeats stdin.
+     */
+    public static String toJson(List<Heartbeat> heartbeats) {
+        StringBuilder json = new StringBuilder("[");
+        for (Heartbeat heartbeat : heartbeats) {
+            if (json.length() > 1)
+                json.append(',');
+            json.append("{\"entity\":");
+            appendString(json, heartbeat.entity);
+            json.append(",\"type\":\"file\",\"time\":").append(heartbeat.time());
+            json.append(",\"is_write\":").append(heartbeat.isWrite);
+            if (heartbeat.getProjectName() != null) {
+                json.append(",\"project\":");
+                appendString(json, heartbeat.getProjectName());
+            }
+            if (heartbeat.position != null) {
+                json.append(",\"lineno\":").append(heartbeat.position.lineno);
+                json.append(",\"cursorpos\":").append(heartbeat.position.cursorpos);
+                json.append(",\"lines\":").append(heartbeat.position.lines);
+            }
+            if (heartbeat.lineAdditions != 0 || heartbeat.lineDeletions != 0) {
+                json.append(",\"line_additions\":").append(heartbeat.lineAdditions);
+                json.append(",\"line_deletions\":").append(heartbeat.lineDeletions);
+            }
+            json.append('}');
+        }
+        return json.append(']').toString();
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20)
+                        json.append(String.format("\\u%04x", (int) c));
+                    else
+                        json.append(c);
+            }
+        }
+        json.append('"');
+    }
+}
@@ -0,0 +1,301 @@
+/* ==========================================================
+File:        HeartbeatDispatcher.java
+Description: Queues heartbeats and sends them in batches from a fixed pool of workers.
+Maintainer:  WakaTime <support@wakatime.com>
+License:     BSD, see LICENSE for more details.
+Website:     https://wakatime.com/
+===========================================================*/
+
+package org.wakatime.netbeans.plugin;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openide.util.RequestProcessor;
+
+public class HeartbeatDispatcher {
+    public static final int DEFAULT_CAPACITY = 100;
+    public static final int DEFAULT_WORKERS = 2;
+    public static final int DEFAULT_BATCH_SIZE = 25;
+    public static final int DEFAULT_BATCH_WINDOW = 10; // seconds
+
+    private static final ArrayDeque<Heartbeat> queue = new ArrayDeque<Heartbeat>();
+    private static final AtomicLong enqueued = new AtomicLong();
+    private static final AtomicLong merged = new AtomicLong();
+    private static final AtomicLong dispatched = new AtomicLong();
+    private static final AtomicLong dropped = new AtomicLong();
+    private static final AtomicLong spawned = new AtomicLong();
+    private static final AtomicLong retried = new AtomicLong();
+    private static final CircuitBreaker breaker = new CircuitBreaker("wakatime-cli",
+            ConfigFile.readSetting("cli_failure_threshold", CircuitBreaker.DEFAULT_FAILURE_THRESHOLD, 1),
+            ConfigFile.readSetting("cli_cooldown", CircuitBreaker.DEFAULT_COOLDOWN, 1) * 1000L);
+    private static RetryPolicy retryPolicy = null;
+    private static int capacity = -1;
+    private static int workers = -1;
+    private static int batchSize = -1;
+    private static int batchWindow = -1;
+    private static int activeWorkers = 0;
+    private static boolean flushScheduled = false;
+    private static RequestProcessor processor = null;
+    private static RequestProcessor.Task flushTask = null;
+
+    /**
+     * Adds a heartbeat to the queue. A pending heartbeat for the same file
+     * is merged instead of queued twice, and when the queue is full the
+     * oldest pending heartbeat is dropped to make room. Queued heartbeats
+     * are sent once a full batch is waiting or the batch window expires.
+     */
+    public static void enqueue(Heartbeat heartbeat) {
+        boolean startWorker = false;
+        boolean scheduleFlush = false;
+        synchronized (queue) {
+            enqueued.incrementAndGet();
+            for (Heartbeat pending : queue) {
+                if (pending.entity.equals(heartbeat.entity) && pending.project == heartbeat.project) {
+                    pending.merge(heartbeat);
+                    merged.incrementAndGet();
+                    return;
+                }
+            }
+            if (queue.size() >= getCapacity()) {
+                Heartbeat oldest = queue.pollFirst();
+                HeartbeatStates.dequeued(oldest.entity);
+                dropped.incrementAndGet();
+                WakaTime.debug("Heartbeat queue full, dropped heartbeat for " + oldest.entity);
+            }
+            queue.addLast(heartbeat);
+            if (queue.size() >= getBatchSize()) {
+                startWorker = reserveWorker();
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                scheduleFlush = true;
+            }
+        }
+        if (startWorker)
+            getProcessor().post(new Worker());
+        if (scheduleFlush)
+            getFlushTask().schedule(getBatchWindow() * 1000);
+    }
+
+    /**
+     * Appends heartbeats to the journal from a dispatcher thread, so a
+     * caller on the event thread never waits for the file write.
+     */
+    public static void journal(final List<Heartbeat> heartbeats) {
+        getProcessor().post(new Runnable() {
+            @Override
+            public void run() {
+                HeartbeatJournal.append(heartbeats);
+            }
+        });
+    }
+
+    /**
+     * Sends everything still queued from the calling thread. Used when the
+     * IDE is shutting down and worker threads may not get to run.
+     */
+    public static void flush() {
+        List<Heartbeat> batch;
+        while (!(batch = pollBatch(false)).isEmpty()) {
+            if (!send(batch))
+                HeartbeatJournal.append(batch);
+        }
+    }
+
+    public static int getQueueDepth() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    public static long getEnqueuedCount() {
+        return enqueued.get();
+    }
+
+    public static long getMergedCount() {
+        return merged.get();
+    }
+
+    public static long getDispatchedCount() {
+        return dispatched.get();
+    }
+
+    public static long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public static long getSpawnCount() {
+        return spawned.get();
+    }
+
+    public static long getRetryCount() {
+        return retried.get();
+    }
+
+    public static CircuitBreaker getCircuitBreaker() {
+        return breaker;
+    }
+
+    public static synchronized RetryPolicy getRetryPolicy() {
+        if (retryPolicy == null)
+            retryPolicy = RetryPolicy.fromConfig();
+        return retryPolicy;
+    }
+
+    public static int getCapacity() {
+        if (capacity < 0)
+            capacity = ConfigFile.readSetting("heartbeat_queue_size", DEFAULT_CAPACITY, 1);
+        return capacity;
+    }
+
+    public static int getWorkers() {
+        if (workers < 0)
+            workers = ConfigFile.readSetting("heartbeat_workers", DEFAULT_WORKERS, 1);
+        return workers;
+    }
+
+    public static int getBatchSize() {
+        if (batchSize < 0)
+            batchSize = ConfigFile.readSetting("heartbeat_batch_size", DEFAULT_BATCH_SIZE, 1);
+        return batchSize;
+    }
+
+    public static int getBatchWindow() {
+        if (batchWindow < 0)
+            batchWindow = ConfigFile.readSetting("heartbeat_batch_window", DEFAULT_BATCH_WINDOW, 1);
+        return batchWindow;
+    }
+
+    private static synchronized RequestProcessor getProcessor() {
+        if (processor == null)
+            processor = new RequestProcessor("WakaTime Heartbeats", getWorkers(), true);
+        return processor;
+    }
+
+    private static synchronized RequestProcessor.Task getFlushTask() {
+        if (flushTask == null) {
+            flushTask = getProcessor().create(new Runnable() {
+                @Override
+                public void run() {
+                    boolean startWorker = false;
+                    synchronized (queue) {
+                        flushScheduled = false;
+                        if (!queue.isEmpty())
+                            startWorker = reserveWorker();
+                    }
+                    if (startWorker)
+                        new Worker().run();
+                }
+            });
+        }
+        return flushTask;
+    }
+
+    // must hold the queue lock
+    private static boolean reserveWorker() {
+        if (activeWorkers < getWorkers()) {
+            activeWorkers++;
+            return true;
+        }
+        return false;
+    }
+
+    private static List<Heartbeat> pollBatch(boolean isWorker) {
+        List<Heartbeat> batch = new ArrayList<Heartbeat>();
+        synchronized (queue) {
+            Heartbeat heartbeat;
+            while (batch.size() < getBatchSize() && (heartbeat = queue.pollFirst()) != null) {
+                HeartbeatStates.dequeued(heartbeat.entity);
+                batch.add(heartbeat);
+            }
+            if (batch.isEmpty() && isWorker)
+                activeWorkers--;
+        }
+        return batch;
+    }
+
+    /**
+     * Runs wakatime-cli for a batch of heartbeats, returning false when the
+     * process could not be started.
+     */
+    static boolean send(final List<Heartbeat> batch) {
+        if (HttpTransport.isEnabled()) {
+            if (HttpTransport.send(batch)) {
+                dispatched.addAndGet(batch.size());
+                recordLatency(batch);
+                return true;
+            }
+            WakaTime.debug("Falling back to wakatime-cli for " + batch.size() + " heartbeats");
+        }
+        Heartbeat heartbeat = batch.get(0);
+        List<Heartbeat> extraHeartbeats = batch.subList(1, batch.size());
+        final String[] cmds = WakaTime.buildCliCommand(heartbeat, !extraHeartbeats.isEmpty());
+        WakaTime.debug("Executing CLI: " + Arrays.toString(WakaTime.obfuscateKey(cmds)));
+        byte[] stdin = null;
+        if (!extraHeartbeats.isEmpty()) {
+            try {
+                stdin = (Heartbeat.toJson(extraHeartbeats) + "\n").getBytes("UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                WakaTime.error(e.toString());
+            }
+        }
+        for (int tries = 0; ; tries++) {
+            if (!breaker.allowRequest()) {
+                WakaTime.debug("wakatime-cli circuit breaker is open, holding " + batch.size() + " heartbeats");
+                return false;
+            }
+            try {
+                ProcessRunner.start(cmds, stdin, new ProcessRunner.Callback() {
+                    @Override
+                    public void exited(int exitCode, long latencyNanos) {
+                        recordLatency(batch);
+                    }
+                });
+                spawned.incrementAndGet();
+                breaker.recordSuccess();
+                dispatched.addAndGet(batch.size());
+                return true;
+            } catch (IOException e) {
+                breaker.recordFailure();
+                if (tries < getRetryPolicy().getMaxRetries()) {
+                    WakaTime.debug(e.toString());
+                    retried.incrementAndGet();
+                    try {
+                        Thread.sleep(getRetryPolicy().delay(tries));
+                    } catch (InterruptedException e1) {
+                        WakaTime.error(e1.toString());
+                        return false;
+                    }
+                } else {
+                    WakaTime.error(e.toString());
+                    return false;
+                }
+            }
+        }
+    }
+
+    private static void recordLatency(List<Heartbeat> batch) {
+        long now = System.nanoTime();
+        for (Heartbeat sent : batch) {
+            if (sent.created != 0)
+                HeartbeatStats.recordLatency(now - sent.created);
+        }
+    }
+
+    private static class Worker implements Runnable {
+        @Override
+        public void run() {
+            List<Heartbeat> batch;
+            while (!(batch = pollBatch(true)).isEmpty()) {
+                if (!send(batch))
+                    HeartbeatJournal.append(batch);
+                else if (!HeartbeatJournal.isEmpty())
+                    HeartbeatJournal.replay();
+            }
+        }
+    }
+}
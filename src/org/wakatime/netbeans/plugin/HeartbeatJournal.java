@@ -0,0 +1,352 @@
+/* ==========================================================
+File:        HeartbeatJournal.java
+Description: Keeps heartbeats on disk until wakatime-cli can send them.
+Maintainer:  WakaTime <support@wakatime.com>
+License:     BSD, see LICENSE for more details.
+Website:     https://wakatime.com/
+===========================================================*/
+
+package org.wakatime.netbeans.plugin;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import org.openide.util.RequestProcessor;
+
+/**
+ * Append-only journal of heartbeats that could not be sent.
+ *
+ * Each record is framed as a version byte, the payload length, a CRC32 of
+ * the payload and the payload itself. A record cut short by a crash or
+ * failing its checksum ends the journal, so a torn write only loses the
+ * heartbeat that was being written.
+ *
+ * Replaying first renames the journal to a replay file, so new heartbeats
+ * go to a fresh journal meanwhile. After each batch is sent the replay
+ * file is rewritten without it, and it is deleted once empty. A crash
+ * during replay resends at most one batch, and a replay file left behind
+ * is picked up again by the next replay.
+ */
+public class HeartbeatJournal {
+    public static final String FILE_NAME = "netbeans-heartbeats.journal";
+    public static final String REPLAY_FILE_NAME = "netbeans-heartbeats.replay";
+    public static final int DEFAULT_MAX_SIZE = 1024; // kilobytes
+    private static final byte VERSION = 3; // 2 added the cursor position, 3 line changes
+    private static final int HEADER_SIZE = 9;
+    private static final int MAX_RECORD_SIZE = 64 * 1024;
+
+    private static final Object lock = new Object();
+    private static final RequestProcessor processor = new RequestProcessor("WakaTime Journal Replay", 1);
+    private static long maxSize = -1;
+    private static boolean replaying = false;
+    private static boolean repaired = false;
+
+    /**
+     * Appends heartbeats to the journal, evicting the oldest records when
+     * the journal would grow past its size cap. When the new heartbeats
+     * alone are over the cap, only the newest of them that fit are kept.
+     */
+    public static void append(List<Heartbeat> heartbeats) {
+        if (heartbeats.isEmpty())
+            return;
+        List<byte[]> records = new ArrayList<byte[]>(heartbeats.size());
+        long size = 0;
+        try {
+            for (Heartbeat heartbeat : heartbeats) {
+                byte[] record = encode(heartbeat);
+                records.add(record);
+                size += record.length;
+            }
+        } catch (IOException e) {
+            WakaTime.warn(e.toString());
+            return;
+        }
+        synchronized (lock) {
+            File file = getFile();
+            if (!file.getParentFile().exists())
+                file.getParentFile().mkdirs();
+            try {
+                repair(file);
+                if (file.length() + size > getMaxSize()) {
+                    List<byte[]> all = readRecords(file);
+                    all.addAll(records);
+                    long kept = 0;
+                    int keepFrom = all.size();
+                    while (keepFrom > 0 && kept + all.get(keepFrom - 1).length <= getMaxSize()) {
+                        keepFrom--;
+                        kept += all.get(keepFrom).length;
+                    }
+                    WakaTime.debug("Heartbeat journal full, evicting " + keepFrom + " oldest heartbeats");
+                    writeRecords(file, all.subList(keepFrom, all.size()));
+                    return;
+                }
+                FileOutputStream out = new FileOutputStream(file, true);
+                try {
+                    for (byte[] record : records) {
+                        out.write(record);
+                    }
+                } finally {
+                    out.close();
+                }
+            } catch (IOException e) {
+                WakaTime.error("Unable to write heartbeat journal: " + e.toString());
+            }
+        }
+    }
+
+    public static boolean isEmpty() {
+        synchronized (lock) {
+            return getFile().length() == 0 && getReplayFile().length() == 0;
+        }
+    }
+
+    /**
+     * Drains the journal in the background, sending heartbeats in batches.
+     * When a batch fails to send, it and the rest stay in the replay file
+     * for the next replay.
+     */
+    public static void replay() {
+        synchronized (lock) {
+            if (replaying || (getFile().length() == 0 && !getReplayFile().exists()))
+                return;
+            replaying = true;
+        }
+        processor.post(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    // a replay file left by a crash goes first, then the journal
+                    if (drain())
+                        drain();
+                } finally {
+                    synchronized (lock) {
+                        replaying = false;
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Sends the replay file, moving the journal into its place first when
+     * there is none. Returns true when the replay file was sent completely.
+     */
+    private static boolean drain() {
+        File replayFile = getReplayFile();
+        List<byte[]> records;
+        synchronized (lock) {
+            try {
+                if (!replayFile.exists()) {
+                    File file = getFile();
+                    if (file.length() == 0)
+                        return false;
+                    repair(file);
+                    move(file, replayFile);
+                }
+                records = readRecords(replayFile);
+                if (records.isEmpty()) {
+                    Files.delete(replayFile.toPath());
+                    return true;
+                }
+            } catch (IOException e) {
+                WakaTime.warn("Unable to read heartbeat journal: " + e.toString());
+                return false;
+            }
+        }
+        WakaTime.debug("Replaying " + records.size() + " heartbeats from journal");
+        int batchSize = HeartbeatDispatcher.getBatchSize();
+        while (!records.isEmpty()) {
+            int count = Math.min(batchSize, records.size());
+            List<Heartbeat> batch = new ArrayList<Heartbeat>(count);
+            for (byte[] record : records.subList(0, count)) {
+                Heartbeat heartbeat = decode(record);
+                if (heartbeat != null)
+                    batch.add(heartbeat);
+            }
+            if (!batch.isEmpty() && !HeartbeatDispatcher.send(batch)) {
+                WakaTime.debug("Replay failed, keeping " + records.size() + " heartbeats for later");
+                return false;
+            }
+            records = records.subList(count, records.size());
+            try {
+                if (records.isEmpty())
+                    Files.delete(replayFile.toPath());
+                else
+                    writeRecords(replayFile, records);
+            } catch (IOException e) {
+                WakaTime.error("Unable to update heartbeat replay file: " + e.toString());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Cuts off a torn record left at the end of the journal by a crash,
+     * so records appended after it stay readable.
+     */
+    private static void repair(File file) throws IOException {
+        if (repaired)
+            return;
+        repaired = true;
+        List<byte[]> records = readRecords(file);
+        long size = 0;
+        for (byte[] record : records) {
+            size += record.length;
+        }
+        if (size != file.length()) {
+            WakaTime.warn("Truncating damaged heartbeat journal from " + file.length() + " to " + size + " bytes");
+            writeRecords(file, records);
+        }
+    }
+
+    private static File getFile() {
+        return new File(Dependencies.getResourcesLocation(), FILE_NAME);
+    }
+
+    private static File getReplayFile() {
+        return new File(Dependencies.getResourcesLocation(), REPLAY_FILE_NAME);
+    }
+
+    private static long getMaxSize() {
+        if (maxSize < 0)
+            maxSize = ConfigFile.readSetting("heartbeat_journal_size", DEFAULT_MAX_SIZE, 1) * 1024L;
+        return maxSize;
+    }
+
+    private static byte[] encode(Heartbeat heartbeat) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(bytes);
+        payload.writeUTF(heartbeat.entity);
+        payload.writeLong(heartbeat.timestamp);
+        payload.writeBoolean(heartbeat.isWrite);
+        String projectName = heartbeat.getProjectName();
+        payload.writeBoolean(projectName != null);
+        if (projectName != null)
+            payload.writeUTF(projectName);
+        payload.writeBoolean(heartbeat.position != null);
+        if (heartbeat.position != null) {
+            payload.writeInt(heartbeat.position.lineno);
+            payload.writeInt(heartbeat.position.cursorpos);
+            payload.writeInt(heartbeat.position.lines);
+        }
+        payload.writeInt(heartbeat.lineAdditions);
+        payload.writeInt(heartbeat.lineDeletions);
+        payload.close();
+
+        byte[] data = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        ByteArrayOutputStream record = new ByteArrayOutputStream(HEADER_SIZE + data.length);
+        DataOutputStream out = new DataOutputStream(record);
+        out.writeByte(VERSION);
+        out.writeInt(data.length);
+        out.writeInt((int) crc.getValue());
+        out.write(data);
+        out.close();
+        return record.toByteArray();
+    }
+
+    private static Heartbeat decode(byte[] record) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(record, HEADER_SIZE, record.length - HEADER_SIZE));
+            String entity = in.readUTF();
+            long timestamp = in.readLong();
+            boolean isWrite = in.readBoolean();
+            String projectName = in.readBoolean() ? in.readUTF() : null;
+            Heartbeat heartbeat = new Heartbeat(entity, projectName, isWrite, timestamp);
+            if (record[0] >= 2 && in.readBoolean())
+                heartbeat.position = new CursorPosition(in.readInt(), in.readInt(), in.readInt());
+            if (record[0] >= 3) {
+                heartbeat.lineAdditions = in.readInt();
+                heartbeat.lineDeletions = in.readInt();
+            }
+            return heartbeat;
+        } catch (IOException e) {
+            WakaTime.warn("Skipping unreadable journal record: " + e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Reads whole records, header included, up to the first torn or
+     * corrupt one.
+     */
+    private static List<byte[]> readRecords(File file) throws IOException {
+        List<byte[]> records = new ArrayList<byte[]>();
+        if (!file.exists())
+            return records;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            while (true) {
+                byte[] record = new byte[HEADER_SIZE];
+                int read = in.read(record, 0, 1);
+                if (read < 1)
+                    break;
+                in.readFully(record, 1, HEADER_SIZE - 1);
+                DataInputStream header = new DataInputStream(new ByteArrayInputStream(record));
+                byte version = header.readByte();
+                int length = header.readInt();
+                int checksum = header.readInt();
+                if (version < 1 || version > VERSION || length < 0 || length > MAX_RECORD_SIZE) {
+                    WakaTime.warn("Heartbeat journal is corrupt, ignoring remaining records");
+                    break;
+                }
+                byte[] full = new byte[HEADER_SIZE + length];
+                System.arraycopy(record, 0, full, 0, HEADER_SIZE);
+                in.readFully(full, HEADER_SIZE, length);
+                CRC32 crc = new CRC32();
+                crc.update(full, HEADER_SIZE, length);
+                if ((int) crc.getValue() != checksum) {
+                    WakaTime.warn("Heartbeat journal checksum mismatch, ignoring remaining records");
+                    break;
+                }
+                records.add(full);
+            }
+        } catch (EOFException e) {
+            WakaTime.debug("Heartbeat journal ends with a partial record");
+        } finally {
+            in.close();
+        }
+        return records;
+    }
+
+    /**
+     * Replaces the journal contents through a temp file so a crash leaves
+     * either the old or the new journal in place.
+     */
+    private static void writeRecords(File file, List<byte[]> records) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            for (byte[] record : records) {
+                out.write(record);
+            }
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        move(tmp, file);
+    }
+
+    private static void move(File from, File to) throws IOException {
+        try {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/* ==========================================================
+File:        HeartbeatStates.java
+Description: Tracks when each file last had a heartbeat sent.
+Maintainer:  WakaTime <support@wakatime.com>
+License:     BSD, see LICENSE for more details.
+Website:     https://wakatime.com/
+===========================================================*/
+
+package org.wakatime.netbeans.plugin;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.netbeans.api.project.Project;
+import org.openide.util.RequestProcessor;
+
+/**
+ * Per-file heartbeat state, so switching between files only sends a
+ * heartbeat for a file when that file's own interval has passed.
+ * Least recently used files are evicted once the table is full.
+ *
+ * The interval adapts to activity. It starts at heartbeat_min_interval
+ * and is multiplied by heartbeat_interval_growth each time a heartbeat
+ * is sent while the file has been edited without a pause as long as the
+ * minimum interval, up to heartbeat_max_interval. A pause resets it, and
+ * so does activity in another file since the file's last heartbeat, so
+ * alternating between files never counts as sustained typing in either.
+ * The maximum is kept below wakatime-cli's duration timeout, so sustained
+ * typing still joins into one duration. When a widened file goes quiet,
+ * a trailing heartbeat is sent at the time of its last edit, so no
+ * editing time is lost to the wider interval.
+ */
+public class HeartbeatStates {
+    public static final int MAX_ENTRIES = 500;
+    public static final int DEFAULT_MIN_INTERVAL = WakaTime.FREQUENCY * 60; // seconds
+    public static final int DEFAULT_MAX_INTERVAL = 10 * 60; // seconds
+    public static final int DEFAULT_INTERVAL_GROWTH = 2;
+    public static final int CLI_DURATION_TIMEOUT = 15 * 60; // seconds
+
+    private static final LinkedHashMap<String, State> states = new LinkedHashMap<String, State>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, State> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    private static int minInterval = -1;
+    private static int maxInterval = -1;
+    private static int growth = -1;
+    private static RequestProcessor.Task trailingTask = null;
+    private static String lastActiveFile = null;
+    private static long lastSwitchTime = 0; // seconds, when activity last moved to another file
+
+    public static class State {
+        public long lastSentTime = 0; // seconds
+        public long lastActivity = 0; // seconds
+        public int interval = 0; // seconds, 0 until the first heartbeat
+        public boolean lastWrite = false;
+        public boolean pending = false;
+        WeakReference<Project> project = null;
+    }
+
+    /**
+     * Records activity in a file, returning true when a heartbeat should
+     * be sent for it. Writes are always sent.
+     */
+    public static boolean shouldSend(String file, Project project, long currentTime, boolean isWrite) {
+        boolean scheduleTrailing = false;
+        synchronized (states) {
+            State state = getState(file);
+            if (lastActiveFile != null && !lastActiveFile.equals(file))
+                lastSwitchTime = Math.max(lastSwitchTime, currentTime);
+            lastActiveFile = file;
+            boolean switched = lastSwitchTime > state.lastSentTime;
+            boolean paused = switched || state.lastActivity == 0 || currentTime - state.lastActivity >= getMinInterval();
+            state.lastActivity = Math.max(state.lastActivity, currentTime);
+            if (project == null)
+                state.project = null;
+            else if (state.project == null || state.project.get() != project)
+                state.project = new WeakReference<Project>(project);
+            if (paused)
+                state.interval = getMinInterval();
+            if (!isWrite && (state.pending || !enoughTimePassed(state, currentTime))) {
+                scheduleTrailing = state.interval > getMinInterval();
+            } else {
+                if (!paused && state.lastSentTime > 0)
+                    state.interval = (int) Math.min((long) state.interval * getGrowth(), getMaxInterval());
+                state.lastSentTime = currentTime;
+                state.lastWrite = isWrite;
+                state.pending = true;
+                return true;
+            }
+        }
+        if (scheduleTrailing)
+            getTrailingTask().schedule(getMinInterval() * 1000);
+        return false;
+    }
+
+    /**
+     * Called once a file's heartbeat has left the dispatcher queue.
+     */
+    public static void dequeued(String file) {
+        synchronized (states) {
+            State state = states.get(file);
+            if (state != null)
+                state.pending = false;
+        }
+    }
+
+    public static int size() {
+        synchronized (states) {
+            return states.size();
+        }
+    }
+
+    public static int getMinInterval() {
+        if (minInterval < 0)
+            minInterval = ConfigFile.readSetting("heartbeat_min_interval", DEFAULT_MIN_INTERVAL, 1);
+        return minInterval;
+    }
+
+    public static int getMaxInterval() {
+        if (maxInterval < 0) {
+            int value = ConfigFile.readSetting("heartbeat_max_interval", DEFAULT_MAX_INTERVAL, 1);
+            int limit = CLI_DURATION_TIMEOUT - 60;
+            if (value > limit) {
+                WakaTime.warn("heartbeat_max_interval must stay below wakatime-cli's " + CLI_DURATION_TIMEOUT + "s timeout, using " + limit);
+                value = limit;
+            }
+            maxInterval = Math.max(value, getMinInterval());
+        }
+        return maxInterval;
+    }
+
+    public static int getGrowth() {
+        if (growth < 0)
+            growth = ConfigFile.readSetting("heartbeat_interval_growth", DEFAULT_INTERVAL_GROWTH, 1);
+        return growth;
+    }
+
+    private static boolean enoughTimePassed(State state, long currentTime) {
+        int interval = state.interval > 0 ? state.interval : getMinInterval();
+        return state.lastSentTime + interval < currentTime;
+    }
+
+    private static State getState(String file) {
+        State state = states.get(file);
+        if (state == null) {
+            state = new State();
+            states.put(file.intern(), state);
+        }
+        return state;
+    }
+
+    private static synchronized RequestProcessor.Task getTrailingTask() {
+        if (trailingTask == null) {
+            trailingTask = new RequestProcessor("WakaTime Throttle", 1).create(new Runnable() {
+                @Override
+                public void run() {
+                    sendTrailingHeartbeats();
+                }
+            });
+        }
+        return trailingTask;
+    }
+
+    private static void sendTrailingHeartbeats() {
+        List<Heartbeat> trailing = new ArrayList<Heartbeat>();
+        long nextCheck = collectTrailing(System.currentTimeMillis() / 1000, trailing);
+        for (Heartbeat heartbeat : trailing) {
+            WakaTime.debug("Sending trailing heartbeat for " + heartbeat.entity);
+            WakaTime.sendHeartbeat(heartbeat);
+        }
+        if (nextCheck > 0)
+            getTrailingTask().schedule((int) Math.min(nextCheck, getMinInterval()) * 1000);
+    }
+
+    /**
+     * Adds a heartbeat at the last edit of each widened file that has gone
+     * quiet since its last heartbeat to trailing, and resets its interval.
+     * Returns the seconds until another file goes quiet, or 0 when none is
+     * waiting to.
+     */
+    static long collectTrailing(long now, List<Heartbeat> trailing) {
+        long nextCheck = 0;
+        synchronized (states) {
+            for (Map.Entry<String, State> entry : states.entrySet()) {
+                State state = entry.getValue();
+                if (state.interval <= getMinInterval() || state.lastActivity <= state.lastSentTime)
+                    continue;
+                long quietAt = state.lastActivity + getMinInterval();
+                if (now < quietAt || state.pending) {
+                    long wait = Math.max(quietAt - now, 1);
+                    nextCheck = nextCheck == 0 ? wait : Math.min(nextCheck, wait);
+                    continue;
+                }
+                state.lastSentTime = state.lastActivity;
+                state.lastWrite = false;
+                state.pending = true;
+                state.interval = getMinInterval();
+                Project project = state.project == null ? null : state.project.get();
+                trailing.add(new Heartbeat(entry.getKey(), project, false, state.lastSentTime * 1000));
+            }
+        }
+        return nextCheck;
+    }
+}
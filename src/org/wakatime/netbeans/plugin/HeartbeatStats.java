@@ -0,0 +1,171 @@
+/* ==========================================================
+File:        HeartbeatStats.java
+Description: Counts heartbeats and exposes them over JMX.
+Maintainer:  WakaTime <support@wakatime.com>
+License:     BSD, see LICENSE for more details.
+Website:     https://wakatime.com/
+===========================================================*/
+
+package org.wakatime.netbeans.plugin;
+
+import java.lang.management.ManagementFactory;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registered as org.wakatime.netbeans:type=Heartbeats. Latency is
+ * measured from the edit that produced a heartbeat until the
+ * wakatime-cli process sending it exits. CliInvocations lists the most
+ * recent wakatime-cli runs, oldest first, with their exit codes and
+ * latencies.
+ */
+public class HeartbeatStats implements HeartbeatStatsMBean {
+    public static final String OBJECT_NAME = "org.wakatime.netbeans:type=Heartbeats";
+
+    private static final AtomicLong typing = new AtomicLong();
+    private static final AtomicLong saves = new AtomicLong();
+    private static final LatencyHistogram latency = new LatencyHistogram(); // microseconds
+
+    public static void recordProduced(boolean fromSave) {
+        if (fromSave)
+            saves.incrementAndGet();
+        else
+            typing.incrementAndGet();
+    }
+
+    public static void recordLatency(long nanos) {
+        latency.record(nanos / 1000);
+    }
+
+    public static void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name))
+                server.registerMBean(new HeartbeatStats(), name);
+        } catch (JMException e) {
+            WakaTime.warn("Unable to register heartbeat MBean: " + e.toString());
+        }
+    }
+
+    public static void unregister() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name))
+                server.unregisterMBean(name);
+        } catch (JMException e) {
+            WakaTime.warn("Unable to unregister heartbeat MBean: " + e.toString());
+        }
+    }
+
+    @Override
+    public long getTypingHeartbeats() {
+        return typing.get();
+    }
+
+    @Override
+    public long getSaveHeartbeats() {
+        return saves.get();
+    }
+
+    @Override
+    public long getEnqueuedHeartbeats() {
+        return HeartbeatDispatcher.getEnqueuedCount();
+    }
+
+    @Override
+    public long getMergedHeartbeats() {
+        return HeartbeatDispatcher.getMergedCount();
+    }
+
+    @Override
+    public long getDispatchedHeartbeats() {
+        return HeartbeatDispatcher.getDispatchedCount();
+    }
+
+    @Override
+    public long getDroppedHeartbeats() {
+        return HeartbeatDispatcher.getDroppedCount();
+    }
+
+    @Override
+    public long getRetries() {
+        return HeartbeatDispatcher.getRetryCount();
+    }
+
+    @Override
+    public long getCliSpawns() {
+        return HeartbeatDispatcher.getSpawnCount();
+    }
+
+    @Override
+    public long getCliRunning() {
+        return ProcessRunner.getRunningCount();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return HeartbeatDispatcher.getQueueDepth();
+    }
+
+    @Override
+    public String getCircuitBreakerState() {
+        return HeartbeatDispatcher.getCircuitBreaker().getState().toString();
+    }
+
+    @Override
+    public long getLatencyCount() {
+        return latency.getCount();
+    }
+
+    @Override
+    public double getLatencyP50Millis() {
+        return latency.percentile(50) / 1000.0;
+    }
+
+    @Override
+    public double getLatencyP99Millis() {
+        return latency.percentile(99) / 1000.0;
+    }
+
+    @Override
+    public double getLatencyMaxMillis() {
+        return latency.getMax() / 1000.0;
+    }
+
+    @Override
+    public int getDocumentListeners() {
+        return DocumentListeners.getListenerCount();
+    }
+
+    @Override
+    public int getCachedDocuments() {
+        return DocumentCache.size();
+    }
+
+    @Override
+    public int getTrackedFiles() {
+        return HeartbeatStates.size();
+    }
+
+    @Override
+    public String[] getCliInvocations() {
+        List<ProcessRunner.Invocation> history = ProcessRunner.getHistory();
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        String[] invocations = new String[history.size()];
+        for (int i = 0; i < invocations.length; i++) {
+            ProcessRunner.Invocation invocation = history.get(i);
+            invocations[i] = format.format(new Date(invocation.finishedAt)) + " exit=" + invocation.exitCode + " latency=" + invocation.latency + "ms";
+        }
+        return invocations;
+    }
+}
@@ -0,0 +1,31 @@
+/* ==========================================================
+File:        HeartbeatStatsMBean.java
+Description: JMX view of the heartbeat pipeline.
+Maintainer:  WakaTime <support@wakatime.com>
+License:     BSD, see LICENSE for more details.
+Website:     https://wakatime.com/
+===========================================================*/
+
+package org.wakatime.netbeans.plugin;
+
+public interface HeartbeatStatsMBean {
+    long getTypingHeartbeats();
+    long getSaveHeartbeats();
+    long getEnqueuedHeartbeats();
+    long getMergedHeartbeats();
+    long getDispatchedHeartbeats();
+    long getDroppedHeartbeats();
+    long getRetries();
+    long getCliSpawns();
+    long getCliRunning();
+    int getQueueDepth();
+    String getCircuitBreakerState();
+    long getLatencyCount();
+    double getLatencyP50Millis();
+    double getLatencyP99Millis();
+    double getLatencyMaxMillis();
+    int getDocumentListeners();
+    int getCachedDocuments();
+    int getTrackedFiles();
+    String[] getCliInvocations();
+}
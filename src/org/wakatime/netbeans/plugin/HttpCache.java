@@ -0,0 +1,209 @@
+/* ==========================================================
+File:        HttpCache.java
+Description: On-disk cache of values fetched over HTTP, shared by all IDEs.
+Maintainer:  WakaTime <support@wakatime.com>
+License:     BSD, see LICENSE for more details.
+Website:     https://wakatime.com/
+===========================================================*/
+
+package org.wakatime.netbeans.plugin;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Remembers a value extracted from a URL's response together with the
+ * response's ETag and Last-Modified headers, when it was fetched and for
+ * how long it stays fresh. Entries live in netbeans-http-cache.cfg in the
+ * resources folder, one section per URL.
+ *
+ * A fresh entry is returned without touching the network. A stale one is
+ * revalidated with If-None-Match and If-Modified-Since, so an unchanged
+ * resource costs a 304. Fetching and writing happen while holding a lock
+ * on netbeans-http-cache.lock, and the lock holder re-reads the cache
+ * first, so IDEs starting together make one request between them. The
+ * file is replaced atomically, so readers never see a partial write.
+ */
+public class HttpCache {
+    public static final String FILE_NAME = "netbeans-http-cache.cfg";
+    private static final String LOCK_FILE_NAME = "netbeans-http-cache.lock";
+
+    public interface Extractor {
+        /**
+         * Returns the value to cache from a response body, or null if the
+         * body doesn't contain one.
+         */
+        String extract(Reader body) throws IOException;
+    }
+
+    private static class Entry {
+        String etag;
+        String lastModified;
+        long fetchedAt;
+        long ttl;
+        String value;
+
+        // the caller's ttl wins over the stored one, so a shorter ttl applies right away
+        boolean isFresh(long now, long maxAge) {
+            return value != null && now >= fetchedAt && now - fetchedAt < Math.min(ttl, maxAge);
+        }
+    }
+
+    /**
+     * Returns the cached value for url if it's younger than ttl seconds,
+     * otherwise fetches it. When the request fails, the last known value is
+     * returned, and after an error status it is kept for another ttl
+     * seconds so a rate limited API isn't asked again on every start.
+     * Returns null when nothing is known about the url.
+     */
+    public static String get(String url, long ttl, Extractor extractor) {
+        String section = sectionName(url);
+        Entry entry = read(section);
+        long now = System.currentTimeMillis() / 1000;
+        if (entry != null && entry.isFresh(now, ttl)) {
+            WakaTime.debug("Using cached response for " + url + ", fetched " + (now - entry.fetchedAt) + "s ago");
+            return entry.value;
+        }
+
+        synchronized (HttpCache.class) {
+            Utils.Lock lock = Utils.lock(new File(Dependencies.getResourcesLocation(), LOCK_FILE_NAME));
+            try {
+                // another IDE may have refreshed the entry while we waited for the lock
+                entry = read(section);
+                now = System.currentTimeMillis() / 1000;
+                if (entry != null && entry.isFresh(now, ttl)) {
+                    WakaTime.debug("Using response for " + url + " cached by another IDE");
+                    return entry.value;
+                }
+
+                Entry fetched = fetch(url, entry, extractor);
+                if (fetched != null) {
+                    fetched.fetchedAt = now;
+                    fetched.ttl = ttl;
+                    write(section, url, fetched);
+                    return fetched.value;
+                }
+                return entry == null ? null : entry.value;
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    /**
+     * Returns the new entry to store, the old one on 304 or after an error
+     * status, or null when the request itself failed.
+     */
+    private static Entry fetch(String url, final Entry cached, final Extractor extractor) {
+        WakaTime.debug("Fetching " + url);
+        try {
+            return HttpRequests.execute(url, new HttpRequests.Handler<Entry>() {
+                @Override
+                public Entry handle(HttpURLConnection conn) throws IOException {
+                    conn.setRequestProperty("Accept", "application/json");
+                    if (cached != null && cached.value != null) {
+                        if (cached.etag != null)
+                            conn.setRequestProperty("If-None-Match", cached.etag);
+                        if (cached.lastModified != null)
+                            conn.setRequestProperty("If-Modified-Since", cached.lastModified);
+                    }
+                    int statusCode = conn.getResponseCode();
+                    if (statusCode == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+                        HttpRequests.drain(conn.getInputStream());
+                        WakaTime.debug(conn.getURL() + " not modified");
+                        return cached;
+                    }
+                    if (statusCode != HttpURLConnection.HTTP_OK) {
+                        HttpRequests.drain(conn.getErrorStream());
+                        WakaTime.warn("Request to " + conn.getURL() + " failed with status " + statusCode);
+                        return cached;
+                    }
+                    Reader body = new BufferedReader(new InputStreamReader(conn.getInputStream(), "UTF-8"));
+                    String value;
+                    try {
+                        value = extractor.extract(body);
+                    } finally {
+                        body.close();
+                    }
+                    if (value == null) {
+                        WakaTime.warn("Unexpected response from " + conn.getURL());
+                        return cached;
+                    }
+                    Entry entry = new Entry();
+                    entry.etag = conn.getHeaderField("ETag");
+                    entry.lastModified = conn.getHeaderField("Last-Modified");
+                    entry.value = value;
+                    return entry;
+                }
+            });
+        } catch (IOException e) {
+            WakaTime.warn(e.getMessage());
+            return null;
+        }
+    }
+
+    private static Entry read(String section) {
+        try {
+            IniFile ini = IniFile.read(getFile());
+            String value = ini.get(section, "value");
+            if (value == null)
+                return null;
+            Entry entry = new Entry();
+            entry.etag = emptyToNull(ini.get(section, "etag"));
+            entry.lastModified = emptyToNull(ini.get(section, "last_modified"));
+            entry.fetchedAt = Long.parseLong(ini.get(section, "fetched_at"));
+            entry.ttl = Long.parseLong(ini.get(section, "ttl"));
+            entry.value = value;
+            return entry;
+        } catch (IOException e) {
+            WakaTime.warn("Unable to read http cache: " + e.toString());
+        } catch (NumberFormatException e) {
+            WakaTime.warn("Ignoring invalid http cache entry: " + e.toString());
+        }
+        return null;
+    }
+
+    // must hold the lock
+    private static void write(String section, String url, Entry entry) {
+        try {
+            File file = getFile();
+            IniFile ini = IniFile.read(file);
+            ini.set(section, "url", url);
+            ini.set(section, "etag", entry.etag == null ? "" : entry.etag);
+            ini.set(section, "last_modified", entry.lastModified == null ? "" : entry.lastModified);
+            ini.set(section, "fetched_at", Long.toString(entry.fetchedAt));
+            ini.set(section, "ttl", Long.toString(entry.ttl));
+            ini.set(section, "value", entry.value);
+            ConfigFile.replace(file, ini.toString());
+        } catch (IOException e) {
+            WakaTime.error("Unable to write http cache: " + e.toString());
+        }
+    }
+
+    private static String emptyToNull(String s) {
+        return s == null || s.equals("") ? null : s;
+    }
+
+    private static File getFile() {
+        return new File(Dependencies.getResourcesLocation(), FILE_NAME);
+    }
+
+    /**
+     * Section names are case-insensitive, so urls are keyed by their hash.
+     */
+    private static String sectionName(String url) {
+        try {
+            return Utils.toHex(MessageDigest.getInstance("SHA-1").digest(url.getBytes("UTF-8")));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
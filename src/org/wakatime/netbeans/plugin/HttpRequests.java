@@ -0,0 +1,175 @@
+/* ==========================================================
+File:        HttpRequests.java
+Description: Shared HTTP client used for all of the plugin's network calls.
+Maintainer:  WakaTime <support@wakatime.com>
+License:     BSD, see LICENSE for more details.
+Website:     https://wakatime.com/
+===========================================================*/
+
+package org.wakatime.netbeans.plugin;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.GeneralSecurityException;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+
+/**
+ * Every request opens exactly one connection with connect and read
+ * timeouts. Bodies are read to the end and closed so the JDK can reuse
+ * the connection. Certificates are always verified unless the caller
+ * opts in to retrying once without verification after the TLS handshake
+ * fails (https://github.com/wakatime/jetbrains-wakatime/issues/46). Only
+ * requests that carry no credentials and whose response is never
+ * installed or executed may opt in. The relaxed trust applies only to
+ * that connection, never to the JVM-wide default socket factory.
+ */
+public class HttpRequests {
+    public static final String USER_AGENT = "github.com/wakatime/netbeans-wakatime";
+    public static final int CONNECT_TIMEOUT = 10000; // milliseconds
+    public static final int READ_TIMEOUT = 30000; // milliseconds
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    private static SSLSocketFactory insecureSocketFactory = null;
+
+    public interface Handler<T> {
+        T handle(HttpURLConnection conn) throws IOException;
+    }
+
+    /**
+     * Opens a connection and passes it to the handler.
+     */
+    public static <T> T execute(String url, Handler<T> handler) throws IOException {
+        return execute(url, handler, false);
+    }
+
+    /**
+     * Opens a connection and passes it to the handler. When allowInsecure
+     * is true and the TLS handshake fails, the request is retried once
+     * without certificate verification. Never pass true for requests with
+     * credentials or for downloads that get installed.
+     */
+    public static <T> T execute(String url, Handler<T> handler, boolean allowInsecure) throws IOException {
+        try {
+            return connect(url, handler, false);
+        } catch (SSLException e) {
+            if (!allowInsecure)
+                throw e;
+            WakaTime.warn(e.getMessage());
+            return connect(url, handler, true);
+        }
+    }
+
+    private static <T> T connect(String url, Handler<T> handler, boolean insecure) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setConnectTimeout(CONNECT_TIMEOUT);
+        conn.setReadTimeout(READ_TIMEOUT);
+        conn.setRequestProperty("User-Agent", USER_AGENT);
+        if (insecure && conn instanceof HttpsURLConnection)
+            ((HttpsURLConnection) conn).setSSLSocketFactory(getInsecureSocketFactory());
+        try {
+            return handler.handle(conn);
+        } catch (IOException e) {
+            conn.disconnect();
+            throw e;
+        }
+    }
+
+    /**
+     * Fetches a URL as text. Sends If-Modified-Since when lastModified is
+     * given and returns null when the server answers 304 Not Modified.
+     */
+    public static Response getString(String url, final String lastModified) throws IOException {
+        return getString(url, lastModified, false);
+    }
+
+    /**
+     * Like getString(url, lastModified), optionally retrying without
+     * certificate verification as described on execute.
+     */
+    public static Response getString(String url, final String lastModified, boolean allowInsecure) throws IOException {
+        WakaTime.debug("getString(" + url + ")");
+        return execute(url, new Handler<Response>() {
+            @Override
+            public Response handle(HttpURLConnection conn) throws IOException {
+                if (lastModified != null && !lastModified.trim().equals(""))
+                    conn.setRequestProperty("If-Modified-Since", lastModified.trim());
+                int statusCode = conn.getResponseCode();
+                if (statusCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    drain(conn.getInputStream());
+                    return null;
+                }
+                InputStream in = statusCode < 400 ? conn.getInputStream() : conn.getErrorStream();
+                String body = readString(in);
+                String responseLastModified = statusCode == HttpURLConnection.HTTP_OK ? conn.getHeaderField("Last-Modified") : null;
+                return new Response(statusCode, body, responseLastModified);
+            }
+        }, allowInsecure);
+    }
+
+    public static long copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long total = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+            total += read;
+        }
+        return total;
+    }
+
+    /**
+     * Reads a response body to the end and closes it, so the connection
+     * can go back to the keep-alive pool.
+     */
+    public static void drain(InputStream in) throws IOException {
+        if (in == null)
+            return;
+        try {
+            byte[] buffer = new byte[4096];
+            while (in.read(buffer) != -1) {
+                // discard
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static String readString(InputStream in) throws IOException {
+        if (in == null)
+            return "";
+        StringBuilder text = new StringBuilder();
+        Reader reader = new InputStreamReader(in, "UTF-8");
+        try {
+            char[] buffer = new char[4096];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                text.append(buffer, 0, read);
+            }
+        } finally {
+            reader.close();
+        }
+        return text.toString();
+    }
+
+    private static synchronized SSLSocketFactory getInsecureSocketFactory() throws IOException {
+        if (insecureSocketFactory == null) {
+            try {
+                SSLContext context = SSLContext.getInstance("SSL");
+                context.init(null, new TrustManager[] { new LocalSSLTrustManager() }, null);
+                insecureSocketFactory = context.getSocketFactory();
+            } catch (GeneralSecurityException e) {
+                throw new IOException(e);
+            }
+        }
+        return insecureSocketFactory;
+    }
+}
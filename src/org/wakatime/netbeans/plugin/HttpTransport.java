@@ -0,0 +1,146 @@
+/* ==========================================================
+File:        HttpTransport.java
+Description: Sends heartbeats straight to the WakaTime API without wakatime-cli.
+Maintainer:  WakaTime <support@wakatime.com>
+License:     BSD, see LICENSE for more details.
+Website:     https://wakatime.com/
+===========================================================*/
+
+package org.wakatime.netbeans.plugin;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Optional transport enabled with heartbeat_transport = http in the
+ * [settings] section. Batches are posted gzipped to the bulk heartbeats
+ * endpoint under api_url through the shared HttpRequests client, so
+ * connections are pooled and proxy settings applied by
+ * Dependencies.configureProxy are honored. A failed post returns false
+ * so the caller can fall back to wakatime-cli.
+ *
+ * wakatime-cli applies filters, privacy settings and per-project api keys
+ * from .wakatime.cfg before sending. This transport doesn't, so it stays
+ * off while any of them is set and heartbeats go through the CLI.
+ * Language and branch are left out, so the API detects them instead of a
+ * second copy of wakatime-cli's detection that would drift from it.
+ */
+public class HttpTransport {
+    public static final String DEFAULT_API_URL = "https://api.wakatime.com/api/v1";
+    private static final char[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    // [settings] keys only wakatime-cli knows how to apply
+    private static final String[] CLI_SETTINGS = {
+        "exclude",
+        "include",
+        "include_only_with_project_file",
+        "exclude_unknown_project",
+        "hide_file_names",
+        "hide_filenames",
+        "hidefilenames",
+        "hide_project_names",
+        "hide_branch_names",
+        "hide_project_folder",
+    };
+    // sections only wakatime-cli knows how to apply
+    private static final String[] CLI_SECTIONS = { "projectmap", "project_api_key" };
+
+    /**
+     * Returns true when heartbeat_transport = http and none of the settings
+     * only wakatime-cli applies are set.
+     */
+    public static boolean isEnabled() {
+        String transport = ConfigFile.get("settings", "heartbeat_transport", false);
+        if (transport == null || !transport.trim().equalsIgnoreCase("http"))
+            return false;
+        String setting = cliOnlySetting();
+        if (setting != null) {
+            WakaTime.debug("Not using HTTP transport because " + setting + " is set in " + WakaTime.CONFIG);
+            return false;
+        }
+        return true;
+    }
+
+    private static String cliOnlySetting() {
+        for (String key : CLI_SETTINGS) {
+            String value = ConfigFile.get("settings", key, false);
+            if (value != null && !value.trim().equals("") && !value.trim().equalsIgnoreCase("false"))
+                return key;
+        }
+        for (String section : CLI_SECTIONS) {
+            if (ConfigFile.hasSection(section, false))
+                return "[" + section + "]";
+        }
+        return null;
+    }
+
+    public static boolean send(final List<Heartbeat> batch) {
+        final String apiKey = WakaTime.getApiKey();
+        if (apiKey.equals(""))
+            return false;
+        try {
+            int status = HttpRequests.execute(getApiUrl() + "/users/current/heartbeats.bulk", new HttpRequests.Handler<Integer>() {
+                @Override
+                public Integer handle(HttpURLConnection conn) throws IOException {
+                    conn.setRequestMethod("POST");
+                    conn.setDoOutput(true);
+                    conn.setRequestProperty("Authorization", "Basic " + base64(apiKey.getBytes("UTF-8")));
+                    conn.setRequestProperty("User-Agent", userAgent());
+                    conn.setRequestProperty("Content-Type", "application/json");
+                    conn.setRequestProperty("Content-Encoding", "gzip");
+                    conn.setRequestProperty("Accept", "application/json");
+
+                    byte[] body = Heartbeat.toJson(batch).getBytes("UTF-8");
+                    GZIPOutputStream out = new GZIPOutputStream(conn.getOutputStream());
+                    try {
+                        out.write(body);
+                    } finally {
+                        out.close();
+                    }
+
+                    int status = conn.getResponseCode();
+                    HttpRequests.drain(status < 400 ? conn.getInputStream() : conn.getErrorStream());
+                    return status;
+                }
+            });
+            WakaTime.debug("Sent " + batch.size() + " heartbeats over HTTP, status " + status);
+            return status >= 200 && status < 300;
+        } catch (IOException e) {
+            WakaTime.warn("Unable to send heartbeats over HTTP: " + e.toString());
+            return false;
+        }
+    }
+
+    private static String getApiUrl() {
+        String apiUrl = ConfigFile.get("settings", "api_url", false);
+        if (apiUrl == null || apiUrl.trim().equals(""))
+            return DEFAULT_API_URL;
+        apiUrl = apiUrl.trim();
+        while (apiUrl.endsWith("/"))
+            apiUrl = apiUrl.substring(0, apiUrl.length() - 1);
+        return apiUrl;
+    }
+
+    private static String userAgent() {
+        return "wakatime/" + WakaTime.VERSION + " (" + Dependencies.osname() + "-" + Dependencies.architecture() + ") "
+                + WakaTime.IDE_NAME + "/" + WakaTime.IDE_VERSION + " " + WakaTime.IDE_NAME.toLowerCase() + "-wakatime/" + WakaTime.VERSION;
+    }
+
+    private static String base64(byte[] data) {
+        StringBuilder out = new StringBuilder((data.length + 2) / 3 * 4);
+        for (int i = 0; i < data.length; i += 3) {
+            int b = (data[i] & 0xff) << 16;
+            if (i + 1 < data.length)
+                b |= (data[i + 1] & 0xff) << 8;
+            if (i + 2 < data.length)
+                b |= data[i + 2] & 0xff;
+            out.append(BASE64[(b >> 18) & 0x3f]);
+            out.append(BASE64[(b >> 12) & 0x3f]);
+            out.append(i + 1 < data.length ? BASE64[(b >> 6) & 0x3f] : '=');
+            out.append(i + 2 < data.length ? BASE64[b & 0x3f] : '=');
+        }
+        return out.toString();
+    }
+}
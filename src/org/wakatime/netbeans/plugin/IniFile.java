@@ -0,0 +1,212 @@
+/* ==========================================================
+File:        IniFile.java
+Description: Line-preserving INI document with an indexed section/key view.
+Maintainer:  WakaTime <support@wakatime.com>
+License:     BSD, see LICENSE for more details.
+Website:     https://wakatime.com/
+===========================================================*/
+
+package org.wakatime.netbeans.plugin;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An INI file parsed in a single pass.
+ *
+ * Every line is kept, comments and blank lines included, in a linked
+ * list so the file is written back exactly as it was read apart from the
+ * keys that were set. Sections and keys are indexed by hash, so lookups
+ * and edits don't scan the file.
+ *
+ * Section names are case-insensitive and keys are case-sensitive. A key
+ * line is split at its first '=', so values may contain '='. Indented
+ * lines after a key continue its value. Lines starting with '#' or ';'
+ * are comments. When a key appears twice in a section the first one
+ * wins.
+ */
+public class IniFile {
+    private static final String INDENT = "    ";
+
+    private final Line head = new Line(null);
+    private final Map<String, Section> sections = new HashMap<String, Section>();
+
+    private static class Line {
+        String text;
+        Line prev;
+        Line next;
+
+        Line(String text) {
+            this.text = text;
+        }
+    }
+
+    private static class Entry {
+        Line line;
+        int continuations = 0;
+        String value;
+    }
+
+    private static class Section {
+        Line header;
+        Line last;
+        final Map<String, Entry> entries = new HashMap<String, Entry>();
+    }
+
+    public IniFile() {
+        head.prev = head;
+        head.next = head;
+    }
+
+    public static IniFile read(File file) throws IOException {
+        IniFile ini = new IniFile();
+        if (!file.exists())
+            return ini;
+        Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try {
+            ini.parse(new BufferedReader(reader));
+        } finally {
+            reader.close();
+        }
+        return ini;
+    }
+
+    public String get(String section, String key) {
+        Section s = sections.get(section.toLowerCase());
+        if (s == null)
+            return null;
+        Entry entry = s.entries.get(key);
+        return entry == null ? null : entry.value;
+    }
+
+    /**
+     * Returns true when the section is missing or has no keys.
+     */
+    public boolean isEmpty(String section) {
+        Section s = sections.get(section.toLowerCase());
+        return s == null || s.entries.isEmpty();
+    }
+
+    /**
+     * Sets a key, rewriting its line in place when it exists and otherwise
+     * adding it at the end of its section, creating the section if needed.
+     * Newlines in the value become indented continuation lines, and a null
+     * value is written as an empty one.
+     */
+    public void set(String section, String key, String value) {
+        if (value == null)
+            value = "";
+        String name = section.toLowerCase();
+        Section s = sections.get(name);
+        if (s == null) {
+            s = new Section();
+            if (!name.isEmpty()) {
+                s.header = insertAfter(head.prev, "[" + name + "]");
+                s.last = s.header;
+            }
+            sections.put(name, s);
+        }
+        String[] parts = value.split("\n", -1);
+        Entry entry = s.entries.get(key);
+        boolean isLast;
+        if (entry == null) {
+            entry = new Entry();
+            entry.line = insertAfter(s.last == null ? head : s.last, key + " = " + parts[0]);
+            s.entries.put(key, entry);
+            isLast = true;
+        } else {
+            entry.line.text = key + " = " + parts[0];
+            isLast = s.last == entry.line;
+            for (int i = 0; i < entry.continuations; i++) {
+                Line continuation = entry.line.next;
+                isLast = isLast || continuation == s.last;
+                unlink(continuation);
+            }
+        }
+        Line previous = entry.line;
+        for (int i = 1; i < parts.length; i++) {
+            previous = insertAfter(previous, INDENT + parts[i].trim());
+        }
+        if (isLast)
+            s.last = previous;
+        entry.continuations = parts.length - 1;
+        entry.value = value;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder contents = new StringBuilder();
+        for (Line line = head.next; line != head; line = line.next) {
+            contents.append(line.text).append("\n");
+        }
+        return contents.toString();
+    }
+
+    void parse(BufferedReader reader) throws IOException {
+        Section current = null;
+        Entry entry = null;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.replace("\0", "");
+            Line node = insertAfter(head.prev, line);
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#") || trimmed.startsWith(";")) {
+                entry = null;
+                continue;
+            }
+            if (entry != null && Character.isWhitespace(line.charAt(0))) {
+                entry.continuations++;
+                entry.value = entry.value + "\n" + trimmed;
+                current.last = node;
+                continue;
+            }
+            entry = null;
+            if (trimmed.startsWith("[") && trimmed.endsWith("]")) {
+                String name = trimmed.substring(1, trimmed.length() - 1).toLowerCase();
+                current = sections.get(name);
+                if (current == null) {
+                    current = new Section();
+                    current.header = node;
+                    sections.put(name, current);
+                }
+                current.last = node;
+                continue;
+            }
+            int separator = line.indexOf('=');
+            if (separator < 0)
+                continue;
+            if (current == null) {
+                current = new Section();
+                sections.put("", current);
+            }
+            current.last = node;
+            String key = line.substring(0, separator).trim();
+            Entry parsed = new Entry();
+            parsed.line = node;
+            parsed.value = line.substring(separator + 1).trim();
+            if (!current.entries.containsKey(key))
+                current.entries.put(key, parsed);
+            entry = parsed;
+        }
+    }
+
+    private static Line insertAfter(Line previous, String text) {
+        Line line = new Line(text);
+        line.prev = previous;
+        line.next = previous.next;
+        previous.next.prev = line;
+        previous.next = line;
+        return line;
+    }
+
+    private static void unlink(Line line) {
+        line.prev.next = line.next;
+        line.next.prev = line.prev;
+    }
+}
@@ -0,0 +1,114 @@
+/* ==========================================================
+File:        JsonScanner.java
+Description: Finds a single string field in a JSON stream without parsing all of it.
+Maintainer:  WakaTime <support@wakatime.com>
+License:     BSD, see LICENSE for more details.
+Website:     https://wakatime.com/
+===========================================================*/
+
+package org.wakatime.netbeans.plugin;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads JSON one character at a time and stops at the first member with
+ * the wanted key whose value is a string. Only string literals are
+ * decoded; everything else is skipped, so a large document costs no more
+ * than the bytes before the key.
+ */
+public class JsonScanner {
+    private final Reader reader;
+    private int peeked = -2;
+
+    private JsonScanner(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Returns the value of the first string member named key, or null if
+     * the document has none.
+     */
+    public static String findString(Reader reader, String key) throws IOException {
+        return new JsonScanner(reader).find(key);
+    }
+
+    private String find(String key) throws IOException {
+        int c;
+        while ((c = next()) != -1) {
+            if (c != '"')
+                continue;
+            String text = readString();
+            if (!text.equals(key))
+                continue;
+            if (skipWhitespace() != ':')
+                continue;
+            next();
+            if (skipWhitespace() == '"') {
+                next();
+                return readString();
+            }
+        }
+        return null;
+    }
+
+    private String readString() throws IOException {
+        StringBuilder text = new StringBuilder();
+        int c;
+        while ((c = next()) != -1) {
+            if (c == '"')
+                return text.toString();
+            if (c != '\\') {
+                text.append((char) c);
+                continue;
+            }
+            c = next();
+            switch (c) {
+                case 'b': text.append('\b'); break;
+                case 'f': text.append('\f'); break;
+                case 'n': text.append('\n'); break;
+                case 'r': text.append('\r'); break;
+                case 't': text.append('\t'); break;
+                case 'u':
+                    char[] hex = new char[4];
+                    for (int i = 0; i < 4; i++) {
+                        int h = next();
+                        if (h == -1)
+                            throw new IOException("Unterminated JSON string");
+                        hex[i] = (char) h;
+                    }
+                    try {
+                        text.append((char) Integer.parseInt(new String(hex), 16));
+                    } catch (NumberFormatException e) {
+                        throw new IOException("Invalid JSON escape: \\u" + new String(hex));
+                    }
+                    break;
+                case -1:
+                    throw new IOException("Unterminated JSON string");
+                default:
+                    text.append((char) c);
+            }
+        }
+        throw new IOException("Unterminated JSON string");
+    }
+
+    // returns the next non-whitespace character without consuming it
+    private int skipWhitespace() throws IOException {
+        while (Character.isWhitespace(peek())) {
+            next();
+        }
+        return peek();
+    }
+
+    private int peek() throws IOException {
+        if (peeked == -2)
+            peeked = reader.read();
+        return peeked;
+    }
+
+    private int next() throws IOException {
+        int c = peek();
+        peeked = -2;
+        return c;
+    }
+}
@@ -0,0 +1,203 @@
+/* ==========================================================
+File:        ProcessRunner.java
+Description: Starts wakatime-cli processes and reaps them in the background.
+Maintainer:  WakaTime <support@wakatime.com>
+License:     BSD, see LICENSE for more details.
+Website:     https://wakatime.com/
+===========================================================*/
+
+package org.wakatime.netbeans.plugin;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import org.openide.util.RequestProcessor;
+
+/**
+ * Runs processes without parking a thread on each one.
+ *
+ * Output goes to the null device, or in debug mode to a shared reader
+ * that logs a bounded number of lines. One reaper task polls running
+ * processes for their exit code, so completion and latency are recorded
+ * without a waitFor() per process.
+ */
+public class ProcessRunner {
+    public static final int MAX_LOGGED_LINES = 50;
+    public static final int HISTORY_SIZE = 100;
+    private static final int REAP_INTERVAL = 100; // milliseconds
+
+    private static final RequestProcessor processor = new RequestProcessor("WakaTime Processes", 2, true);
+    private static final List<Running> running = new ArrayList<Running>();
+    private static final ArrayDeque<Invocation> history = new ArrayDeque<Invocation>();
+    private static boolean reaping = false;
+    private static final RequestProcessor.Task reaper = processor.create(new Runnable() {
+        @Override
+        public void run() {
+            reap();
+        }
+    });
+
+    public interface Callback {
+        void exited(int exitCode, long latencyNanos);
+    }
+
+    public static class Invocation {
+        public final int exitCode;
+        public final long latency; // milliseconds
+        public final long finishedAt; // milliseconds since epoch
+
+        private Invocation(int exitCode, long latency, long finishedAt) {
+            this.exitCode = exitCode;
+            this.latency = latency;
+            this.finishedAt = finishedAt;
+        }
+    }
+
+    private static class Running {
+        final Process process;
+        final long startedAt;
+        final Callback callback;
+
+        Running(Process process, long startedAt, Callback callback) {
+            this.process = process;
+            this.startedAt = startedAt;
+            this.callback = callback;
+        }
+    }
+
+    /**
+     * Starts a process, writes stdin to it if given, and returns without
+     * waiting. The callback, if any, runs on the reaper thread once the
+     * process exits. Throws only when the process could not be started.
+     */
+    public static Process start(String[] cmds, byte[] stdin, Callback callback) throws IOException {
+        ProcessBuilder builder = new ProcessBuilder(cmds);
+        builder.redirectErrorStream(true);
+        if (!WakaTime.DEBUG)
+            builder.redirectOutput(ProcessBuilder.Redirect.to(nullDevice()));
+        long startedAt = System.nanoTime();
+        final Process process = builder.start();
+
+        OutputStream out = process.getOutputStream();
+        try {
+            if (stdin != null)
+                out.write(stdin);
+        } catch (IOException e) {
+            WakaTime.warn("Unable to write to process stdin: " + e.toString());
+        } finally {
+            try {
+                out.close();
+            } catch (IOException e) {
+                WakaTime.debug(e.toString());
+            }
+        }
+
+        if (WakaTime.DEBUG) {
+            processor.post(new Runnable() {
+                @Override
+                public void run() {
+                    logOutput(process);
+                }
+            });
+        }
+
+        synchronized (running) {
+            running.add(new Running(process, startedAt, callback));
+            if (!reaping) {
+                reaping = true;
+                reaper.schedule(REAP_INTERVAL);
+            }
+        }
+        return process;
+    }
+
+    public static int getRunningCount() {
+        synchronized (running) {
+            return running.size();
+        }
+    }
+
+    /**
+     * The most recent invocations, oldest first.
+     */
+    public static List<Invocation> getHistory() {
+        synchronized (history) {
+            return new ArrayList<Invocation>(history);
+        }
+    }
+
+    private static void reap() {
+        List<Running> finished = new ArrayList<Running>();
+        List<Integer> exitCodes = new ArrayList<Integer>();
+        synchronized (running) {
+            Iterator<Running> it = running.iterator();
+            while (it.hasNext()) {
+                Running r = it.next();
+                try {
+                    exitCodes.add(r.process.exitValue());
+                    finished.add(r);
+                    it.remove();
+                } catch (IllegalThreadStateException e) {
+                    // still running
+                }
+            }
+            if (running.isEmpty())
+                reaping = false;
+            else
+                reaper.schedule(REAP_INTERVAL);
+        }
+        long now = System.nanoTime();
+        for (int i = 0; i < finished.size(); i++) {
+            Running r = finished.get(i);
+            int exitCode = exitCodes.get(i);
+            long latency = now - r.startedAt;
+            record(new Invocation(exitCode, latency / 1000000, System.currentTimeMillis()));
+            WakaTime.debug("Command finished with return value: " + exitCode + " after " + (latency / 1000000) + "ms");
+            if (r.callback != null) {
+                try {
+                    r.callback.exited(exitCode, latency);
+                } catch (RuntimeException e) {
+                    WakaTime.warn(e.toString());
+                }
+            }
+        }
+    }
+
+    private static void record(Invocation invocation) {
+        synchronized (history) {
+            if (history.size() >= HISTORY_SIZE)
+                history.pollFirst();
+            history.addLast(invocation);
+        }
+    }
+
+    private static void logOutput(Process process) {
+        int lines = 0;
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"));
+            try {
+                String s;
+                while ((s = reader.readLine()) != null) {
+                    if (lines++ < MAX_LOGGED_LINES)
+                        WakaTime.debug(s);
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            WakaTime.debug(e.toString());
+        }
+        if (lines > MAX_LOGGED_LINES)
+            WakaTime.debug("(" + (lines - MAX_LOGGED_LINES) + " more lines of output not shown)");
+    }
+
+    private static File nullDevice() {
+        return new File(Dependencies.isWindows() ? "NUL" : "/dev/null");
+    }
+}
@@ -0,0 +1,160 @@
+/* ==========================================================
+File:        ProjectIndex.java
+Description: Finds the open project owning a path from a trie of project folders.
+Maintainer:  WakaTime <support@wakatime.com>
+License:     BSD, see LICENSE for more details.
+Website:     https://wakatime.com/
+===========================================================*/
+
+package org.wakatime.netbeans.plugin;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.netbeans.api.project.Project;
+import org.netbeans.api.project.ui.OpenProjects;
+import org.openide.filesystems.FileObject;
+
+/**
+ * A trie of the open projects' folders, one node per path segment, kept
+ * up to date from OpenProjects events. A file belongs to the project of
+ * the deepest folder on its path, so a module nested in a parent project
+ * wins over the parent. Lookups walk the path once and never call into
+ * FileOwnerQuery or the project factories. Files outside every open
+ * project folder have no owner here; DocumentCache falls back to
+ * FileOwnerQuery for those.
+ */
+public class ProjectIndex {
+    private static final Node root = new Node();
+    private static final Set<Project> indexed = new HashSet<Project>();
+    private static boolean installed = false;
+
+    private static class Node {
+        final Map<String, Node> children = new HashMap<String, Node>();
+        Project project;
+    }
+
+    private static final PropertyChangeListener projectsListener = new PropertyChangeListener() {
+        @Override
+        public void propertyChange(PropertyChangeEvent evt) {
+            if (OpenProjects.PROPERTY_OPEN_PROJECTS.equals(evt.getPropertyName())) {
+                update((Project[]) evt.getNewValue());
+                WakaTime.debug("Open projects changed, clearing document cache");
+                DocumentCache.clear();
+            }
+        }
+    };
+
+    /**
+     * Indexes the projects open right now and starts following project
+     * open and close events.
+     */
+    public static synchronized void install() {
+        if (installed)
+            return;
+        OpenProjects projects = OpenProjects.getDefault();
+        projects.addPropertyChangeListener(projectsListener);
+        update(projects.getOpenProjects());
+        installed = true;
+    }
+
+    /**
+     * Returns the open project whose folder is the closest parent of path,
+     * or null when no open project contains it. Paths use '/' separators,
+     * as returned by FileObject.getPath().
+     */
+    public static Project getOwner(String path) {
+        synchronized (root) {
+            Node node = root;
+            Project owner = null;
+            for (String segment : path.split("/")) {
+                if (segment.isEmpty())
+                    continue;
+                node = node.children.get(segment);
+                if (node == null)
+                    break;
+                if (node.project != null)
+                    owner = node.project;
+            }
+            return owner;
+        }
+    }
+
+    public static int size() {
+        synchronized (root) {
+            return indexed.size();
+        }
+    }
+
+    /**
+     * Adds newly opened projects and removes closed ones.
+     */
+    private static void update(Project[] open) {
+        Set<Project> current = new HashSet<Project>(Arrays.asList(open));
+        synchronized (root) {
+            for (Project project : new HashSet<Project>(indexed)) {
+                if (!current.contains(project)) {
+                    remove(project);
+                    indexed.remove(project);
+                }
+            }
+            for (Project project : current) {
+                if (!indexed.contains(project) && add(project))
+                    indexed.add(project);
+            }
+            WakaTime.debug("Indexed " + indexed.size() + " open projects");
+        }
+    }
+
+    // must hold the root lock
+    private static boolean add(Project project) {
+        FileObject folder = project.getProjectDirectory();
+        if (folder == null)
+            return false;
+        Node node = root;
+        for (String segment : folder.getPath().split("/")) {
+            if (segment.isEmpty())
+                continue;
+            Node child = node.children.get(segment);
+            if (child == null) {
+                child = new Node();
+                node.children.put(segment, child);
+            }
+            node = child;
+        }
+        node.project = project;
+        return true;
+    }
+
+    // must hold the root lock
+    private static void remove(Project project) {
+        FileObject folder = project.getProjectDirectory();
+        if (folder == null)
+            return;
+        remove(root, folder.getPath().split("/"), 0, project);
+    }
+
+    /**
+     * Clears the project from the node at the end of the path and prunes
+     * nodes left without a project or children. Returns true when node
+     * itself can be pruned.
+     */
+    private static boolean remove(Node node, String[] segments, int index, Project project) {
+        while (index < segments.length && segments[index].isEmpty()) {
+            index++;
+        }
+        if (index == segments.length) {
+            if (node.project == project)
+                node.project = null;
+        } else {
+            Node child = node.children.get(segments[index]);
+            if (child != null && remove(child, segments, index + 1, project))
+                node.children.remove(segments[index]);
+        }
+        return node != root && node.project == null && node.children.isEmpty();
+    }
+}
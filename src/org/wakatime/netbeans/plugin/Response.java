@@ -0,0 +1,21 @@
+/* ==========================================================
+File:        Response.java
+Description: Status, body and Last-Modified header of an HTTP response.
+Maintainer:  WakaTime <support@wakatime.com>
+License:     BSD, see LICENSE for more details.
+Website:     https://wakatime.com/
+===========================================================*/
+
+package org.wakatime.netbeans.plugin;
+
+class Response {
+    public int statusCode;
+    public String body;
+    public String lastModified;
+
+    public Response(int statusCode, String body, String lastModified) {
+        this.statusCode = statusCode;
+        this.body = body;
+        this.lastModified = lastModified;
+    }
+}
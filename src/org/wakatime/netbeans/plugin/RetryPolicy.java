@@ -0,0 +1,58 @@
+/* ==========================================================
+File:        RetryPolicy.java
+Description: Exponential backoff with jitter between wakatime-cli attempts.
+Maintainer:  WakaTime <support@wakatime.com>
+License:     BSD, see LICENSE for more details.
+Website:     https://wakatime.com/
+===========================================================*/
+
+package org.wakatime.netbeans.plugin;
+
+import java.util.Random;
+
+public class RetryPolicy {
+    public static final int DEFAULT_MAX_RETRIES = 3;
+    public static final int DEFAULT_BASE_DELAY = 100; // milliseconds
+    public static final int DEFAULT_MAX_DELAY = 5000; // milliseconds
+
+    private final int maxRetries;
+    private final long baseDelay;
+    private final long maxDelay;
+    private final Random random = new Random();
+
+    public RetryPolicy(int maxRetries, long baseDelay, long maxDelay) {
+        this.maxRetries = maxRetries;
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+    }
+
+    /**
+     * Builds a policy from cli_max_retries, cli_retry_delay and
+     * cli_retry_max_delay in the [settings] section.
+     */
+    public static RetryPolicy fromConfig() {
+        return new RetryPolicy(
+            ConfigFile.readSetting("cli_max_retries", DEFAULT_MAX_RETRIES, 0),
+            ConfigFile.readSetting("cli_retry_delay", DEFAULT_BASE_DELAY, 0),
+            ConfigFile.readSetting("cli_retry_max_delay", DEFAULT_MAX_DELAY, 0));
+    }
+
+    public int getMaxRetries() {
+        return this.maxRetries;
+    }
+
+    /**
+     * Milliseconds to wait before the given retry, counting from zero.
+     * The delay doubles each retry up to the cap, and a random half of it
+     * is shaved off so several IDEs don't retry in lockstep.
+     */
+    public long delay(int retry) {
+        long cap = this.baseDelay << Math.min(retry, 30);
+        if (cap <= 0 || cap > this.maxDelay)
+            cap = this.maxDelay;
+        long half = cap / 2;
+        synchronized (this.random) {
+            return half + (long) (this.random.nextDouble() * (cap - half));
+        }
+    }
+}
@@ -11,11 +11,7 @@ package org.wakatime.netbeans.plugin;
 import javax.swing.SwingUtilities;
 import javax.swing.text.Document;
 import org.netbeans.api.editor.mimelookup.MimeRegistration;
-import org.netbeans.api.project.FileOwnerQuery;
-import org.netbeans.api.project.Project;
-import org.netbeans.modules.parsing.api.Source;
 import org.netbeans.spi.editor.document.OnSaveTask;
-import org.openide.filesystems.FileObject;
 
 public class SaveListener implements OnSaveTask {
     private final Document document;
@@ -26,17 +22,18 @@ public class SaveListener implements OnSaveTask {
 
     @Override
     public void performTask() {
-        final FileObject file = this.getFile();
-        if (file != null) {
-            final Project currentProject = this.getProject();
+        final DocumentCache.Entry entry = DocumentCache.get(this.document);
+        if (entry != null) {
             final long currentTime = System.currentTimeMillis() / 1000;
             SwingUtilities.invokeLater(new Runnable() {
                 @Override
                 public void run() {
-                    final String currentFile = file.getPath();
-                    WakaTime.sendHeartbeat(currentFile, currentProject, true);
-                    WakaTime.lastFile = currentFile;
-                    WakaTime.lastTime = currentTime;
+                    HeartbeatStates.shouldSend(entry.path, entry.project, currentTime, true);
+                    CustomDocumentListener listener = DocumentListeners.get(document);
+                    if (listener != null)
+                        WakaTime.sendHeartbeat(listener.newHeartbeat(entry.path, entry.project, true));
+                    else
+                        WakaTime.sendHeartbeat(entry.path, entry.project, true, null);
                 }
             });
         }
@@ -52,30 +49,6 @@ public class SaveListener implements OnSaveTask {
         return true;
     }
 
-    private FileObject getFile() {
-        if (this.document == null)
-            return null;
-        Source source = Source.create(this.document);
-        if (source == null)
-            return null;
-        FileObject fileObject = source.getFileObject();
-        if (fileObject == null)
-            return null;
-        return fileObject;
-    }
-
-    private Project getProject() {
-        if (this.document == null)
-            return null;
-        Source source = Source.create(this.document);
-        if (source == null)
-            return null;
-        FileObject fileObject = source.getFileObject();
-        if (fileObject == null)
-            return null;
-        return FileOwnerQuery.getOwner(fileObject);
-    }
-
     @MimeRegistration(mimeType = "", service = OnSaveTask.Factory.class, position = 1500)
     public static final class FactoryImpl implements Factory {
 
@@ -0,0 +1,141 @@
+/* ==========================================================
+File:        StartupPipeline.java
+Description: Runs the plugin's startup work as background stages.
+Maintainer:  WakaTime <support@wakatime.com>
+License:     BSD, see LICENSE for more details.
+Website:     https://wakatime.com/
+===========================================================*/
+
+package org.wakatime.netbeans.plugin;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.swing.SwingUtilities;
+import org.openide.util.RequestProcessor;
+
+/**
+ * A small graph of named startup stages. A stage starts once every stage
+ * it depends on has finished, so independent stages run side by side.
+ * Stages run on a background RequestProcessor unless they are marked to
+ * run on the event dispatch thread. A stage that throws is logged and
+ * still counts as finished, so one failure can't stall the rest of
+ * startup. How long each stage took is logged when the last one ends.
+ */
+public class StartupPipeline {
+    private static final RequestProcessor processor = new RequestProcessor("WakaTime Startup", 4);
+
+    private final Map<String, Stage> stages = new LinkedHashMap<String, Stage>();
+    private long started;
+    private int unfinished;
+
+    private class Stage implements Runnable {
+        final String name;
+        final Runnable body;
+        final boolean eventThread;
+        final List<Stage> dependents = new ArrayList<Stage>();
+        int waitingFor = 0;
+        long took = -1;
+
+        Stage(String name, Runnable body, boolean eventThread) {
+            this.name = name;
+            this.body = body;
+            this.eventThread = eventThread;
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            try {
+                body.run();
+            } catch (RuntimeException e) {
+                WakaTime.error("Startup stage " + name + " failed: " + e.toString());
+            }
+            took = System.nanoTime() - start;
+            WakaTime.debug("Startup stage " + name + " finished in " + took / 1000000 + "ms");
+            finished(this);
+        }
+    }
+
+    /**
+     * Adds a stage running in the background after the given stages.
+     */
+    public StartupPipeline stage(String name, Runnable body, String... dependsOn) {
+        return add(new Stage(name, body, false), dependsOn);
+    }
+
+    /**
+     * Adds a stage running on the event dispatch thread after the given
+     * stages, for work that shows UI.
+     */
+    public StartupPipeline uiStage(String name, Runnable body, String... dependsOn) {
+        return add(new Stage(name, body, true), dependsOn);
+    }
+
+    /**
+     * Starts every stage without dependencies and returns immediately.
+     */
+    public void start() {
+        List<Stage> ready = new ArrayList<Stage>();
+        synchronized (this) {
+            started = System.nanoTime();
+            unfinished = stages.size();
+            for (Stage stage : stages.values()) {
+                if (stage.waitingFor == 0)
+                    ready.add(stage);
+            }
+        }
+        for (Stage stage : ready) {
+            schedule(stage);
+        }
+    }
+
+    private synchronized StartupPipeline add(Stage stage, String... dependsOn) {
+        if (stages.containsKey(stage.name))
+            throw new IllegalArgumentException("Duplicate startup stage: " + stage.name);
+        for (String name : dependsOn) {
+            Stage dependency = stages.get(name);
+            if (dependency == null)
+                throw new IllegalArgumentException("Startup stage " + stage.name + " depends on unknown stage " + name);
+            dependency.dependents.add(stage);
+            stage.waitingFor++;
+        }
+        stages.put(stage.name, stage);
+        return this;
+    }
+
+    private void finished(Stage stage) {
+        List<Stage> ready = new ArrayList<Stage>();
+        boolean done;
+        synchronized (this) {
+            for (Stage dependent : stage.dependents) {
+                if (--dependent.waitingFor == 0)
+                    ready.add(dependent);
+            }
+            done = --unfinished == 0;
+        }
+        for (Stage dependent : ready) {
+            schedule(dependent);
+        }
+        if (done)
+            logTimings();
+    }
+
+    private void schedule(Stage stage) {
+        if (stage.eventThread)
+            SwingUtilities.invokeLater(stage);
+        else
+            processor.post(stage);
+    }
+
+    private synchronized void logTimings() {
+        StringBuilder timings = new StringBuilder();
+        for (Stage stage : stages.values()) {
+            if (timings.length() > 0)
+                timings.append(", ");
+            timings.append(stage.name).append(" ").append(stage.took / 1000000).append("ms");
+        }
+        WakaTime.info("Finished initializing WakaTime plugin in " + (System.nanoTime() - started) / 1000000 + "ms (" + timings + ")");
+    }
+}
@@ -0,0 +1,85 @@
+/* ==========================================================
+File:        Utils.java
+Description: Small helpers shared by the plugin's classes.
+Maintainer:  WakaTime <support@wakatime.com>
+License:     BSD, see LICENSE for more details.
+Website:     https://wakatime.com/
+===========================================================*/
+
+package org.wakatime.netbeans.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+
+public class Utils {
+
+    /**
+     * An advisory lock on a file, shared between IDEs using the same
+     * resources folder. Release it in a finally block.
+     */
+    public static class Lock {
+        private FileChannel channel = null;
+        private FileLock lock = null;
+        private boolean waited = false;
+
+        public boolean isHeld() {
+            return this.lock != null;
+        }
+
+        /**
+         * Returns true when another process held the lock first, so the
+         * caller may find its work already done.
+         */
+        public boolean waited() {
+            return this.waited;
+        }
+
+        public void release() {
+            try {
+                if (this.lock != null)
+                    this.lock.release();
+                if (this.channel != null)
+                    this.channel.close();
+            } catch (IOException e) {
+                WakaTime.debug(e.toString());
+            }
+        }
+    }
+
+    /**
+     * Blocks until the lock on file is held, creating the file and its
+     * folder when needed. When the file can't be locked a warning is
+     * logged and the returned lock isn't held, so the caller carries on
+     * without it. Only one thread per JVM may hold a given lock, so
+     * callers synchronize around it.
+     */
+    public static Lock lock(File file) {
+        Lock lock = new Lock();
+        try {
+            if (!file.getParentFile().exists())
+                file.getParentFile().mkdirs();
+            lock.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            lock.lock = lock.channel.tryLock();
+            if (lock.lock == null) {
+                WakaTime.info("Waiting for another IDE to release " + file.getName() + "...");
+                lock.waited = true;
+                lock.lock = lock.channel.lock();
+            }
+        } catch (IOException e) {
+            WakaTime.warn("Unable to lock " + file + ", continuing without lock: " + e.toString());
+        }
+        return lock;
+    }
+
+    public static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+            hex.append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -10,26 +10,22 @@ package org.wakatime.netbeans.plugin;
 
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javax.swing.text.Document;
 import javax.swing.text.JTextComponent;
 import org.netbeans.api.autoupdate.UpdateElement;
 import org.netbeans.api.autoupdate.UpdateManager;
 import org.netbeans.api.autoupdate.UpdateUnit;
 import org.netbeans.api.editor.EditorRegistry;
 import org.netbeans.api.project.Project;
-import org.netbeans.api.project.ProjectUtils;
 import org.openide.*;
 import org.openide.modules.ModuleInstall;
 import org.openide.util.NbPreferences;
 import org.openide.windows.OnShowing;
-import org.openide.windows.WindowManager;
 import static org.wakatime.netbeans.plugin.WakaTime.IDE_NAME;
 import static org.wakatime.netbeans.plugin.WakaTime.IDE_VERSION;
 
@@ -44,71 +40,120 @@ public class WakaTime extends ModuleInstall implements Runnable {
     public static String VERSION = "Unknown";
     public static String IDE_VERSION = "Unknown";
     public static Boolean DEBUG = false;
-    public static CustomDocumentListener documentListener = null;
     
-    public static Boolean READY = false;
-    public static String lastFile = null;
-    public static long lastTime = 0;
+    public static volatile Boolean READY = false;
 
+    private static final List<Heartbeat> startupHeartbeats = new ArrayList<Heartbeat>();
+
+    /**
+     * Hooks into the editor right away and leaves everything that may hit
+     * the disk or network to a background StartupPipeline, so showing the
+     * main window never waits on it. Heartbeats produced before wakatime-cli
+     * is ready are buffered and sent once it is.
+     */
     @Override
     public void run() {
-        WakaTime.VERSION = WakaTime.getPluginVersion();
-        WakaTime.IDE_VERSION = System.getProperty("netbeans.buildnumber");
-        WakaTime.log.log(Level.INFO, "Initializing WakaTime plugin v{0} (https://wakatime.com/)", WakaTime.VERSION);
-
-        WakaTime.DEBUG = WakaTime.isDebugEnabled();
-        if (WakaTime.DEBUG) {
-            log.setLevel(Level.CONFIG);
-            WakaTime.debug("Logging level set to DEBUG");
-        }
-
-        Dependencies.configureProxy();
-        checkCLI();
-
-        WakaTime.debug("CLI location: " + Dependencies.getCLILocation());
-
-        // prompt for apiKey if it does not already exist
-        String apiKey = getApiKey();
-        if (apiKey.equals("")) {
-            apiKey = ApiKey.promptForApiKey(apiKey);
-            if (apiKey != null && !apiKey.equals("")) {
-                ConfigFile.set("settings", "api_key", false, apiKey);
-                NbPreferences.forModule(WakaTime.class).put("API Key", apiKey);
-            }
-        }
-        WakaTime.debug("API Key: " + obfuscateKey(getApiKey()));
+        DocumentCache.install();
+        HeartbeatStats.register();
 
         // Listen for changes to documents
         PropertyChangeListener l = new PropertyChangeListener() {
             @Override
             public void propertyChange(PropertyChangeEvent evt) {
-                JTextComponent jtc = EditorRegistry.lastFocusedComponent();
-                if (jtc != null) {
-                    Document d = jtc.getDocument();
-                    CustomDocumentListener listener = new CustomDocumentListener(d);
-                    d.addDocumentListener(listener);
-                    listener.update();
+                if (EditorRegistry.COMPONENT_REMOVED_PROPERTY.equals(evt.getPropertyName())) {
+                    DocumentListeners.componentRemoved((JTextComponent) evt.getOldValue());
+                    return;
                 }
+                JTextComponent jtc = EditorRegistry.lastFocusedComponent();
+                if (jtc != null)
+                    DocumentListeners.register(jtc.getDocument());
             }
         };
 
         EditorRegistry.addPropertyChangeListener(l);
 
-        WakaTime.info("Finished initializing WakaTime plugin.");
+        new StartupPipeline()
+            .stage("settings", new Runnable() {
+                @Override
+                public void run() {
+                    WakaTime.VERSION = WakaTime.getPluginVersion();
+                    WakaTime.IDE_VERSION = System.getProperty("netbeans.buildnumber");
+                    WakaTime.log.log(Level.INFO, "Initializing WakaTime plugin v{0} (https://wakatime.com/)", WakaTime.VERSION);
 
-        // install update checker when UI is ready (main window shown)
-        WindowManager.getDefault().invokeWhenUIReady(new Runnable () {
-            @Override
-            public void run () {
-                try {
-                    UpdateHandler.checkAndHandleUpdates();
-                } catch(NullPointerException e) {
-                    WakaTime.error(e.toString());
+                    WakaTime.DEBUG = WakaTime.isDebugEnabled();
+                    if (WakaTime.DEBUG) {
+                        log.setLevel(Level.CONFIG);
+                        WakaTime.debug("Logging level set to DEBUG");
+                    }
                 }
-            }
-        });
+            })
+            .stage("proxy", new Runnable() {
+                @Override
+                public void run() {
+                    Dependencies.configureProxy();
+                }
+            }, "settings")
+            .stage("cli", new Runnable() {
+                @Override
+                public void run() {
+                    checkCLI();
+                }
+            }, "proxy")
+            .stage("symlink", new Runnable() {
+                @Override
+                public void run() {
+                    Dependencies.createSymlink(Dependencies.combinePaths(Dependencies.getResourcesLocation(), "wakatime-cli"), Dependencies.getCLILocation());
+                    WakaTime.debug("wakatime-cli location: " + Dependencies.getCLILocation());
+                }
+            }, "cli")
+            .uiStage("api key", new Runnable() {
+                @Override
+                public void run() {
+                    // prompt for apiKey if it does not already exist
+                    String apiKey = getApiKey();
+                    if (apiKey.equals("")) {
+                        apiKey = ApiKey.promptForApiKey(apiKey);
+                        if (apiKey != null && !apiKey.equals("")) {
+                            ConfigFile.set("settings", "api_key", false, apiKey);
+                            NbPreferences.forModule(WakaTime.class).put("API Key", apiKey);
+                            CliCommandTemplates.invalidate();
+                        }
+                    }
+                    WakaTime.debug("API Key: " + obfuscateKey(getApiKey()));
+                }
+            }, "settings")
+            .stage("heartbeats", new Runnable() {
+                @Override
+                public void run() {
+                    if (WakaTime.READY) {
+                        sendBufferedHeartbeats();
+                        HeartbeatJournal.replay();
+                    }
+                }
+            }, "cli", "api key")
+            .stage("updates", new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        UpdateHandler.checkAndHandleUpdates();
+                    } catch(NullPointerException e) {
+                        WakaTime.error(e.toString());
+                    }
+                }
+            }, "proxy")
+            .start();
     }
     
+    @Override
+    public void close() {
+        synchronized (startupHeartbeats) {
+            HeartbeatJournal.append(startupHeartbeats);
+            startupHeartbeats.clear();
+        }
+        HeartbeatDispatcher.flush();
+        HeartbeatStats.unregister();
+    }
+
     private void checkCLI() {
         if (!Dependencies.isCLIInstalled()) {
             WakaTime.info("Downloading and installing wakatime-cli...");
@@ -131,12 +176,23 @@ public class WakaTime extends ModuleInstall implements Runnable {
             WakaTime.READY = true;
             WakaTime.info("wakatime-cli is up to date.");
         }
-        Dependencies.createSymlink(Dependencies.combinePaths(Dependencies.getResourcesLocation(), "wakatime-cli"), Dependencies.getCLILocation());
-        WakaTime.debug("wakatime-cli location: " + Dependencies.getCLILocation());
+        WakaTime.debug("CLI location: " + Dependencies.getCLILocation());
     }
 
-    public static boolean enoughTimePassed(long currentTime) {
-        return WakaTime.lastTime + FREQUENCY * 60 < currentTime;
+    /**
+     * Hands heartbeats buffered during startup to the dispatcher.
+     */
+    private static void sendBufferedHeartbeats() {
+        List<Heartbeat> buffered;
+        synchronized (startupHeartbeats) {
+            buffered = new ArrayList<Heartbeat>(startupHeartbeats);
+            startupHeartbeats.clear();
+        }
+        if (!buffered.isEmpty())
+            WakaTime.debug("Sending " + buffered.size() + " heartbeats buffered during startup");
+        for (Heartbeat heartbeat : buffered) {
+            HeartbeatDispatcher.enqueue(heartbeat);
+        }
     }
 
     public static void info(String msg) {
@@ -199,67 +255,38 @@ public class WakaTime extends ModuleInstall implements Runnable {
         return "Unknown";
     }
     
-    public static void sendHeartbeat(String file, Project currentProject, boolean isWrite) {
-        if (WakaTime.READY)
-            sendHeartbeat(file, currentProject, isWrite, 0);
+    public static void sendHeartbeat(String file, Project currentProject, boolean isWrite, CursorPosition position) {
+        sendHeartbeat(file, currentProject, isWrite, System.currentTimeMillis(), position);
     }
 
-    private static void sendHeartbeat(final String file, final Project currentProject, final boolean isWrite, final int tries) {
-        final String[] cmds = buildCliCommand(file, currentProject, isWrite);
-        WakaTime.debug("Executing CLI: " + Arrays.toString(obfuscateKey(cmds)));
-        Runnable r = new Runnable() {
-            public void run() {
-                try {
-                    Process proc = Runtime.getRuntime().exec(cmds);
-                    if (WakaTime.DEBUG) {
-                        BufferedReader stdInput = new BufferedReader(new
-                                InputStreamReader(proc.getInputStream()));
-                        BufferedReader stdError = new BufferedReader(new
-                                InputStreamReader(proc.getErrorStream()));
-                        proc.waitFor();
-                        String s;
-                        while ((s = stdInput.readLine()) != null) {
-                            WakaTime.debug(s);
-                        }
-                        while ((s = stdError.readLine()) != null) {
-                            WakaTime.debug(s);
-                        }
-                        WakaTime.debug("Command finished with return value: "+proc.exitValue());
-                    }
-                } catch (Exception e) {
-                    if (tries < 3) {
-                        WakaTime.debug(e.toString());
-                        try {
-                            Thread.sleep(30);
-                        } catch (InterruptedException e1) {
-                            WakaTime.error(e1.toString());
-                        }
-                        sendHeartbeat(file, currentProject, isWrite, tries + 1);
-                    } else {
-                        WakaTime.error(e.toString());
-                    }
+    public static void sendHeartbeat(String file, Project currentProject, boolean isWrite, long timestamp, CursorPosition position) {
+        Heartbeat heartbeat = new Heartbeat(file, currentProject, isWrite, timestamp);
+        heartbeat.position = position;
+        sendHeartbeat(heartbeat);
+    }
+
+    public static void sendHeartbeat(Heartbeat heartbeat) {
+        HeartbeatStats.recordProduced(heartbeat.isWrite);
+        if (WakaTime.READY) {
+            HeartbeatDispatcher.enqueue(heartbeat);
+            return;
+        }
+        synchronized (startupHeartbeats) {
+            if (!WakaTime.READY) {
+                if (startupHeartbeats.size() < HeartbeatDispatcher.getCapacity()) {
+                    startupHeartbeats.add(heartbeat);
+                } else {
+                    HeartbeatDispatcher.journal(Collections.singletonList(heartbeat));
+                    HeartbeatStates.dequeued(heartbeat.entity);
                 }
+                return;
             }
-        };
-        new Thread(r).start();
+        }
+        HeartbeatDispatcher.enqueue(heartbeat);
     }
 
-    public static String[] buildCliCommand(String file, Project currentProject, boolean isWrite) {
-        ArrayList<String> cmds = new ArrayList<String>();
-        cmds.add(Dependencies.getCLILocation());
-        cmds.add("--key");
-        cmds.add(getApiKey());
-        cmds.add("--entity");
-        cmds.add(file);
-        if (currentProject != null) {
-            cmds.add("--project");
-            cmds.add(ProjectUtils.getInformation(currentProject).getDisplayName());
-        }
-        cmds.add("--plugin");
-        cmds.add(IDE_NAME+"/"+IDE_VERSION+" "+IDE_NAME.toLowerCase()+"-wakatime/"+WakaTime.VERSION);
-        if (isWrite)
-            cmds.add("--write");
-        return cmds.toArray(new String[cmds.size()]);
+    public static String[] buildCliCommand(Heartbeat heartbeat, boolean hasExtraHeartbeats) {
+        return CliCommandTemplates.build(heartbeat, hasExtraHeartbeats);
     }
     
     private static String obfuscateKey(String key) {
@@ -272,7 +299,7 @@ public class WakaTime extends ModuleInstall implements Runnable {
         return newKey;
     }
 
-    private static String[] obfuscateKey(String[] cmds) {
+    public static String[] obfuscateKey(String[] cmds) {
         ArrayList<String> newCmds = new ArrayList<String>();
         String lastCmd = "";
         for (String cmd : cmds) {
@@ -5,6 +5,8 @@
  */
 package org.wakatime.netbeans.plugin;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.openide.util.NbPreferences;
 
 final class WakaTimePanel extends javax.swing.JPanel {
@@ -139,14 +141,18 @@ final class WakaTimePanel extends javax.swing.JPanel {
         // SomeSystemOption.getDefault().setSomeStringProperty(someTextField.getText());
 
         String apiKey = apiKeyField.getText();
-        ConfigFile.set("settings", "api_key", false, apiKey);
         NbPreferences.forModule(WakaTime.class).put("API Key", apiKey);
         
         String debug = "false";
         if (debugToggle.isSelected())
             debug = "true";
-        ConfigFile.set("settings", "debug", false, debug);
         NbPreferences.forModule(WakaTime.class).put("Debug", debug);
+
+        Map<String, String> settings = new LinkedHashMap<String, String>();
+        settings.put("api_key", apiKey);
+        settings.put("debug", debug);
+        ConfigFile.set("settings", settings, false);
+        CliCommandTemplates.invalidate();
     }
 
     boolean valid() {